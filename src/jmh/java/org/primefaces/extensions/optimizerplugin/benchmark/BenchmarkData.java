@@ -0,0 +1,150 @@
+package org.primefaces.extensions.optimizerplugin.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Generated input of the benchmarks. The content is deterministic, so that results of different runs are comparable.
+ */
+final class BenchmarkData {
+
+    /**
+     * Number of rules of the generated stylesheets.
+     */
+    enum CssSize {
+        SMALL(50), MEDIUM(2000), HUGE(20000);
+
+        final int rules;
+
+        CssSize(int rules) {
+            this.rules = rules;
+        }
+    }
+
+    static final int IMAGES = 8;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param rules number of rules
+     * @return stylesheet with comments, colors, zero values, strings and image references
+     */
+    static String css(int rules) {
+        Random random = new Random(rules);
+        StringBuilder sb = new StringBuilder(rules * 200);
+        sb.append("/*! preserved license comment */\n");
+        for (int i = 0; i < rules; i++) {
+            if (i % 100 == 0) {
+                sb.append("@media screen and (max-width: ").append(480 + i % 800).append("px) {\n");
+            }
+
+            sb.append(".c").append(i).append(" > a:hover, #id").append(random.nextInt(1000)).append(" span {\n");
+            sb.append("    color: #").append(i % 3 == 0 ? "FFFFFF" : "AABBCC").append(";\n");
+            sb.append("    margin: 0px 0px 0px 0px;\n");
+            sb.append("    padding: 0.50em 0 0.0em ").append(random.nextInt(20)).append("px;\n");
+            if (i % 4 == 0) {
+                sb.append("    background: url(\"../images/img").append(i % IMAGES).append(".png\") no-repeat;\n");
+            }
+
+            if (i % 7 == 0) {
+                sb.append("    background-image: url(#{resource['images/img").append(i % IMAGES)
+                            .append(".png']});\n");
+            }
+
+            sb.append("    font-family: \"Helvetica Neue\", Arial, sans-serif;\n");
+            if (i % 10 == 0) {
+                sb.append("    /* a comment which is removed */\n");
+            }
+
+            sb.append("}\n\n");
+            if (i % 100 == 99 || i == rules - 1) {
+                sb.append("}\n");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param functions number of functions
+     * @param seed seed of the generated names and values
+     * @return script with functions, loops, strings and comments
+     */
+    static String js(int functions, int seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(functions * 300);
+        for (int i = 0; i < functions; i++) {
+            String name = "module" + seed + "Function" + i;
+            sb.append("/**\n * Computes something for ").append(name).append(".\n */\n");
+            sb.append("function ").append(name).append("(firstArgument, secondArgument) {\n");
+            sb.append("    var result = firstArgument * ").append(random.nextInt(100)).append(";\n");
+            sb.append("    for (var index = 0; index < secondArgument.length; index++) {\n");
+            sb.append("        if (secondArgument[index] !== undefined) {\n");
+            sb.append("            result += secondArgument[index].length + \"").append(name).append("\".length;\n");
+            sb.append("        }\n");
+            sb.append("    }\n");
+            sb.append("    return result;\n");
+            sb.append("}\n");
+            sb.append("window.").append(name).append(" = ").append(name).append(";\n\n");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @param dir directory of the images
+     * @param size size of every image in bytes
+     * @throws IOException
+     */
+    static void writeImages(File dir, int size) throws IOException {
+        Random random = new Random(size);
+        Files.createDirectories(dir.toPath());
+        for (int i = 0; i < IMAGES; i++) {
+            byte[] content = new byte[size];
+            random.nextBytes(content);
+            Files.write(new File(dir, "img" + i + ".png").toPath(), content);
+        }
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /**
+     * Log without info and debug output, which would dominate the measurements otherwise.
+     */
+    static final class QuietLog extends SystemStreamLog {
+
+        @Override
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        @Override
+        public void info(CharSequence content) {
+        }
+
+        @Override
+        public void info(CharSequence content, Throwable error) {
+        }
+
+        @Override
+        public void info(Throwable error) {
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+    }
+}
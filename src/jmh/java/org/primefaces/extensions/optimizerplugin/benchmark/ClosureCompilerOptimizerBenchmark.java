@@ -0,0 +1,95 @@
+package org.primefaces.extensions.optimizerplugin.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.extensions.optimizerplugin.model.Aggregation;
+import org.primefaces.extensions.optimizerplugin.optimizer.ClosureCompilerOptimizer;
+import org.primefaces.extensions.optimizerplugin.util.ResourcesSetJsAdapter;
+
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.WarningLevel;
+
+/**
+ * Closure Compiler runs compiling every file on its own compared to compiling all files into one aggregation. The
+ * optimized files get a suffix, so that the input files stay unchanged between operations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClosureCompilerOptimizerBenchmark {
+
+    private static final int FUNCTIONS_PER_FILE = 50;
+
+    @Param({"1", "10"})
+    private int files;
+
+    @Param({"WHITESPACE_ONLY", "SIMPLE_OPTIMIZATIONS"})
+    private CompilationLevel compilationLevel;
+
+    private Path dir;
+
+    private Set<File> inputFiles;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("closure-benchmark");
+        inputFiles = new LinkedHashSet<>();
+        for (int i = 0; i < files; i++) {
+            Path file = dir.resolve("script" + i + ".js");
+            Files.write(file, BenchmarkData.js(FUNCTIONS_PER_FILE, i).getBytes(StandardCharsets.UTF_8));
+            inputFiles.add(file.toFile());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public long singleFiles() throws MojoExecutionException {
+        return optimize(null, ".min");
+    }
+
+    @Benchmark
+    public long aggregated() throws MojoExecutionException {
+        Aggregation aggregation = new Aggregation();
+        aggregation.setOutputFile(dir.resolve("aggregated.min.js").toFile());
+        aggregation.setRemoveIncluded(false);
+        return optimize(aggregation, null);
+    }
+
+    private long optimize(Aggregation aggregation, String suffix) throws MojoExecutionException {
+        ResourcesSetJsAdapter rsa = new ResourcesSetJsAdapter(dir.toFile(), inputFiles, aggregation,
+                    compilationLevel, WarningLevel.QUIET, null, "UTF-8", false, suffix, LanguageMode.ECMASCRIPT5,
+                    LanguageMode.NO_TRANSPILE, false, false, false);
+
+        ClosureCompilerOptimizer optimizer = new ClosureCompilerOptimizer(new BenchmarkData.QuietLog());
+        optimizer.optimize(rsa);
+        return optimizer.getTotalOptimizedSize();
+    }
+}
@@ -0,0 +1,54 @@
+package org.primefaces.extensions.optimizerplugin.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.extensions.optimizerplugin.optimizer.CssCompressor;
+
+/**
+ * Throughput of {@link CssCompressor} with both engines on small, medium and huge stylesheets.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CssCompressorBenchmark {
+
+    private static final int LINE_BREAK_POS = 500;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private BenchmarkData.CssSize size;
+
+    @Param({"REGEX", "TOKENIZER"})
+    private CssCompressor.Engine engine;
+
+    private String css;
+
+    @Setup
+    public void setup() {
+        css = BenchmarkData.css(size.rules);
+    }
+
+    @Benchmark
+    public String compress() throws IOException {
+        CssCompressor compressor = new CssCompressor(new StringReader(css), engine, css.length());
+        StringWriter out = new StringWriter(css.length() / 2);
+        compressor.compress(out, LINE_BREAK_POS);
+        return out.toString();
+    }
+}
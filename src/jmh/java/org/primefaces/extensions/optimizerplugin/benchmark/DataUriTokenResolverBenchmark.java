@@ -0,0 +1,79 @@
+package org.primefaces.extensions.optimizerplugin.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.primefaces.extensions.optimizerplugin.replacer.DataUriCache;
+import org.primefaces.extensions.optimizerplugin.replacer.DataUriTokenResolver;
+
+/**
+ * Resolution of image references to Data URIs, with a cache shared by all resolutions and with a new cache for every
+ * operation, which reads and encodes all images.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DataUriTokenResolverBenchmark {
+
+    @Param({"1024", "16384"})
+    private int imageSize;
+
+    private final Log log = new BenchmarkData.QuietLog();
+
+    private Path dir;
+
+    private List<File> imagesDirs;
+
+    private DataUriTokenResolver cachedResolver;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("datauri-benchmark");
+        BenchmarkData.writeImages(dir.resolve("images").toFile(), imageSize);
+        imagesDirs = List.of(dir.toFile());
+        cachedResolver = new DataUriTokenResolver(log, imagesDirs, new DataUriCache(), 0, Map.of());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public void resolveCached(Blackhole blackhole) throws IOException {
+        resolveAll(cachedResolver, blackhole);
+    }
+
+    @Benchmark
+    public void resolveUncached(Blackhole blackhole) throws IOException {
+        resolveAll(new DataUriTokenResolver(log, imagesDirs, new DataUriCache(), 0, Map.of()), blackhole);
+    }
+
+    private void resolveAll(DataUriTokenResolver resolver, Blackhole blackhole) throws IOException {
+        for (int i = 0; i < BenchmarkData.IMAGES; i++) {
+            blackhole.consume(resolver.resolveToken("'images/img" + i + ".png'"));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.primefaces.extensions.optimizerplugin.benchmark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.primefaces.extensions.optimizerplugin.replacer.CSSRelativeURLReplacingReader;
+import org.primefaces.extensions.optimizerplugin.replacer.FixedMarkerTokenReplacingReader;
+import org.primefaces.extensions.optimizerplugin.replacer.TokenResolver;
+
+/**
+ * Throughput of the token replacing readers. Tokens are resolved to a constant, so that only the reading and
+ * matching is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenReplacingReaderBenchmark {
+
+    private static final String DATA_URI = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJ";
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private BenchmarkData.CssSize size;
+
+    private final Log log = new BenchmarkData.QuietLog();
+
+    private final TokenResolver resolver = token -> DATA_URI;
+
+    private final char[] buffer = new char[8192];
+
+    private String css;
+
+    @Setup
+    public void setup() {
+        css = BenchmarkData.css(size.rules);
+    }
+
+    @Benchmark
+    public long fixedMarker() throws IOException {
+        return readFully(new FixedMarkerTokenReplacingReader(log, resolver, new StringReader(css), "#{resource[", "]}"));
+    }
+
+    @Benchmark
+    public long relativeUrl() throws IOException {
+        return readFully(new CSSRelativeURLReplacingReader(log, resolver, new StringReader(css)));
+    }
+
+    private long readFully(Reader reader) throws IOException {
+        long count = 0;
+        try (Reader in = reader) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                count += read;
+            }
+        }
+
+        return count;
+    }
+}
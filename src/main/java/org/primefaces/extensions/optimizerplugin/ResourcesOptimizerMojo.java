@@ -19,11 +19,22 @@
 package org.primefaces.extensions.optimizerplugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import com.google.javascript.jscomp.CompilationLevel;
 import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
@@ -31,19 +42,36 @@ import com.google.javascript.jscomp.WarningLevel;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
 import org.primefaces.extensions.optimizerplugin.model.Aggregation;
 import org.primefaces.extensions.optimizerplugin.model.ResourcesSet;
+import org.primefaces.extensions.optimizerplugin.model.SizeBudget;
 import org.primefaces.extensions.optimizerplugin.model.SourceMap;
 import org.primefaces.extensions.optimizerplugin.optimizer.ClosureCompilerOptimizer;
+import org.primefaces.extensions.optimizerplugin.optimizer.CssCompressor;
 import org.primefaces.extensions.optimizerplugin.optimizer.YuiCompressorOptimizer;
+import org.primefaces.extensions.optimizerplugin.replacer.DataUriCache;
 import org.primefaces.extensions.optimizerplugin.replacer.DataUriTokenResolver;
+import org.primefaces.extensions.optimizerplugin.util.BufferedLog;
+import org.primefaces.extensions.optimizerplugin.util.BuildState;
+import org.primefaces.extensions.optimizerplugin.util.LogSequencer;
+import org.primefaces.extensions.optimizerplugin.util.Precompressor;
+import org.primefaces.extensions.optimizerplugin.util.ResourcesScanCache;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesScanner;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetAdapter;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetCssAdapter;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetJsAdapter;
+import org.primefaces.extensions.optimizerplugin.util.ResultCache;
+import org.primefaces.extensions.optimizerplugin.util.SizeBudgets;
+import org.primefaces.extensions.optimizerplugin.util.TimingReport;
+import org.primefaces.extensions.optimizerplugin.util.WorkerPool;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
  * Entry point for this plugin.
@@ -57,6 +85,8 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 
 	private static final String[] DEFAULT_EXCLUDES = {};
 
+	private static final String BUILD_STATE_FILE = "build-state.properties";
+
 	/**
 	 * Input directory
 	 */
@@ -113,12 +143,34 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 	private String suffix;
 
 	/**
-	 * Flag if images referenced in CSS files (size < 32KB) should be converted to
-	 * data URIs.
+	 * Engine used to preserve comments, strings and other tokens while minifying
+	 * CSS files. Valid values are 'REGEX' and 'TOKENIZER'. Both produce the same
+	 * output, the single-pass tokenizer is faster on large stylesheets.
+	 */
+	@Parameter(defaultValue = "REGEX")
+	private String cssEngine;
+
+	/**
+	 * Flag if images referenced in CSS files (size up to dataUriMaxSize) should be
+	 * converted to data URIs.
 	 */
 	@Parameter
 	private boolean useDataUri;
 
+	/**
+	 * Maximum size in bytes of images converted to data URIs. Larger images keep
+	 * their reference. A value of 0 or less converts images of any size.
+	 */
+	@Parameter(defaultValue = "32768")
+	private long dataUriMaxSize;
+
+	/**
+	 * Maximum sizes in bytes by image file extension overriding dataUriMaxSize,
+	 * e.g. &lt;svg&gt;65536&lt;/svg&gt;.
+	 */
+	@Parameter
+	private Map<String, String> dataUriMaxSizes;
+
 	/**
 	 * Files to be included. Files selectors follow patterns specified in
 	 * {@link org.codehaus.plexus.util.DirectoryScanner}.
@@ -176,6 +228,45 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 	@Parameter
 	private boolean gzip;
 
+	/**
+	 * Compression level of gzipped files from 1 (fastest) to 9 (best compression).
+	 */
+	@Parameter(defaultValue = "9")
+	private int gzipLevel;
+
+	/**
+	 * Minimum size in bytes of minified files to be gzipped. Smaller files gain
+	 * nothing from compression.
+	 */
+	@Parameter(defaultValue = "256")
+	private long gzipMinSize;
+
+	/**
+	 * Minimum savings in percent of the minified size a gzipped file must achieve.
+	 * Otherwise no gzipped file is written.
+	 */
+	@Parameter(defaultValue = "5")
+	private int gzipMinSavings;
+
+	/**
+	 * Iterations of the exhaustive deflate encoder for gzipped files. The encoder
+	 * searches for the smallest encoding at the expense of build time, more
+	 * iterations compress better but slower. Gzipped files get a few percent
+	 * smaller than with gzipLevel 9. A value less than 1 uses only the built-in
+	 * deflater with the configured gzipLevel.
+	 */
+	@Parameter(defaultValue = "0")
+	private int gzipIterations;
+
+	/**
+	 * Number of threads gzipping files in the background, each one compressing a
+	 * different file. A value less than 1 means the number of worker threads
+	 * configured by 'threads'. A higher value keeps the build time acceptable with
+	 * gzipIterations even if the resources sets are optimized sequentially.
+	 */
+	@Parameter(defaultValue = "0")
+	private int gzipThreads;
+
 	/**
 	 * Compile sets.
 	 */
@@ -183,15 +274,149 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 	private List<ResourcesSet> resourcesSets;
 
 	/**
-	 * Resolved by known project-relative directories.
+	 * Number of worker threads used to optimize independent resources sets,
+	 * aggregations and sub-folders (subDirMode) concurrently. A value less than 1
+	 * means the number of available processors, 1 disables parallel execution.
+	 */
+	@Parameter(defaultValue = "0")
+	private int threads;
+
+	/**
+	 * Flag if subdirectories of input directories should be walked concurrently on
+	 * the worker pool configured by 'threads'. Speeds up scanning very large
+	 * directory trees, especially on network or container file systems.
+	 */
+	@Parameter
+	private boolean parallelScan;
+
+	/**
+	 * Flag if all JavaScript aggregations of a resources set should be compiled in
+	 * one Google Closure Compiler pass, every aggregation as its own chunk. Shared
+	 * prepended files are parsed and compiled only once. Aggregations with source
+	 * maps or without compressing are compiled on their own. Aggregations compiled
+	 * as chunks must not read each other's output files.
+	 */
+	@Parameter
+	private boolean useChunks;
+
+	/**
+	 * Flag whether single (not aggregated) JavaScript files of a resources set
+	 * should be compiled concurrently on the worker pool configured by 'threads'.
+	 * Every concurrent compilation needs its own Google Closure Compiler instance,
+	 * so the memory consumption grows with the number of threads.
+	 */
+	@Parameter
+	private boolean parallelCompilation;
+
+	/**
+	 * Flag whether optimized resources should be cached. Unchanged resources are
+	 * not recompiled in subsequent builds, the cached result is written instead.
+	 * Resources producing source maps are always compiled.
+	 */
+	@Parameter
+	private boolean useCache;
+
+	/**
+	 * Directory of the result cache and the state of incremental builds.
 	 */
-	private DataUriTokenResolver projectDataUriTokenResolver;
+	@Parameter(defaultValue = "${project.build.directory}/resources-optimizer-cache")
+	private File cacheDir;
+
+	/**
+	 * Flag whether only stale resources should be optimized. Aggregations are
+	 * skipped if neither their input files nor their output file changed since the
+	 * last build, single files are optimized only if they or their output changed.
+	 * Images inlined as Data URIs count as input files of the CSS files they are
+	 * inlined into. Incremental IDE builds are always incremental.
+	 */
+	@Parameter
+	private boolean incremental;
 
-	private long originalFilesSize = 0;
+	/**
+	 * Flag whether the duration and size of every phase (scanning, Data URIs, CSS
+	 * compression, JavaScript compilation, aggregation, source maps, gzip) should
+	 * be recorded per file. The report is written as JSON and CSV into
+	 * 'timingReportDir', the slowest files are listed in the log.
+	 */
+	@Parameter
+	private boolean timingReport;
 
-	private long optimizedFilesSize = 0;
+	/**
+	 * Output directory of the timing report.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}")
+	private File timingReportDir;
 
-	boolean resFound = false;
+	/**
+	 * Properties file with the sizes of the resources with a size budget. The
+	 * growth of a resource compared with this baseline is limited by 'maxGrowth' of
+	 * its budget. The file is meant to be committed along with the project.
+	 */
+	@Parameter(defaultValue = "${project.basedir}/resources-size-baseline.properties")
+	private File sizeBaselineFile;
+
+	/**
+	 * Flag whether the size baseline should be replaced with the current sizes,
+	 * e.g. after an intended growth. The growth is not checked then, the maximum
+	 * sizes of the budgets are.
+	 */
+	@Parameter
+	private boolean updateSizeBaseline;
+
+	/**
+	 * Flag whether exceeded size budgets fail the build. Otherwise they are logged
+	 * as warnings.
+	 */
+	@Parameter(defaultValue = "true")
+	private boolean failOnSizeBudget;
+
+	/**
+	 * Base directory of the project, default names of size budgets outside of
+	 * their input directory are relative to it.
+	 */
+	@Parameter(defaultValue = "${project.basedir}", readonly = true)
+	private File basedir;
+
+	@Component
+	private BuildContext buildContext;
+
+	/**
+	 * Resolved project-relative images directories.
+	 */
+	private List<File> projectImagesDirs;
+
+	private final AtomicLong originalFilesSize = new AtomicLong();
+
+	private final AtomicLong optimizedFilesSize = new AtomicLong();
+
+	volatile boolean resFound = false;
+
+	private ResultCache resultCache;
+
+	private BuildState buildState;
+
+	/**
+	 * Data URIs shared by all resources sets and files of this execution.
+	 */
+	private final DataUriCache dataUriCache = new DataUriCache();
+
+	private Map<String, Long> dataUriMaxSizesByExtension;
+
+	/**
+	 * Scan results shared by resources sets and aggregations with the same input
+	 * directory.
+	 */
+	private final ResourcesScanCache resourcesScanCache = new ResourcesScanCache();
+
+	/**
+	 * Writes gzipped files in the background, null if gzip is disabled.
+	 */
+	private Precompressor precompressor;
+
+	/**
+	 * Durations per phase and file, null if timing is disabled.
+	 */
+	private TimingReport timings;
 
 	/**
 	 * Executes Mojo.
@@ -209,231 +434,770 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 
 		// getLog().info("Optimization of resources is started ...");
 
+		final List<String> exceededBudgets;
 		try {
-			if (resourcesSets == null || resourcesSets.isEmpty()) {
-				final String[] incls = (includes != null && includes.length > 0) ? includes : DEFAULT_INCLUDES;
-				final String[] excls = (excludes != null && excludes.length > 0) ? excludes : DEFAULT_EXCLUDES;
+			final List<ResourcesUnit> units = collectResourcesUnits();
+			dataUriMaxSizesByExtension = getDataUriMaxSizes(dataUriMaxSizes);
+
+			if (useCache) {
+				resultCache = new ResultCache(cacheDir);
+			}
+
+			if (timingReport) {
+				timings = new TimingReport();
+			}
+
+			if (incremental || (buildContext != null && buildContext.isIncremental())) {
+				buildState = new BuildState(new File(cacheDir, BUILD_STATE_FILE));
+				buildState.load();
+			}
+
+			try (WorkerPool pool = new WorkerPool(threads);
+					Precompressor gzipPool = gzip ? new Precompressor(getGzipLevel(gzipLevel), gzipIterations,
+							gzipMinSize, gzipMinSavings, gzipThreads > 0 ? gzipThreads : pool.getParallelism())
+							: null) {
+				precompressor = gzipPool;
+				if (precompressor != null) {
+					precompressor.setTimingReport(timings);
+				}
+
+				if (pool.isParallel() && units.size() > 1) {
+					processResourcesUnitsInParallel(units, pool);
+				} else {
+					for (final ResourcesUnit unit : units) {
+						if (unit.chunkGroup == null) {
+							processResourcesUnit(unit, getLog(), pool);
+						} else if (unit.chunkGroup.get(0) == unit) {
+							processChunkGroup(unit.chunkGroup, getLog(), pool);
+						}
+					}
+				}
+
+				if (precompressor != null) {
+					// wait for the files gzipped in the background
+					precompressor.awaitAll();
+				}
+			} finally {
+				if (buildState != null) {
+					// record successfully processed units even if a later one failed
+					buildState.save();
+				}
+			}
+
+			exceededBudgets = checkSizeBudgets(units);
+		} catch (final MojoExecutionException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new MojoExecutionException("Error while executing the mojo " + getClass(), e);
+		}
+
+		if (!exceededBudgets.isEmpty()) {
+			if (failOnSizeBudget) {
+				throw new MojoFailureException(String.join(System.lineSeparator(), exceededBudgets));
+			}
+
+			for (final String exceeded : exceededBudgets) {
+				getLog().warn(exceeded);
+			}
+		}
+
+		if (!resFound) {
+			getLog().info("No resources found for optimization.");
+
+			return;
+		}
+
+		// getLog().info("Optimization of resources has been finished successfully.");
+		outputStatistic();
+
+		if (timings != null) {
+			outputTimingReport();
+		}
+	}
+
+	/**
+	 * Resolves the configuration of all resources sets and aggregations into
+	 * units of work in configuration order.
+	 */
+	private List<ResourcesUnit> collectResourcesUnits() throws MojoExecutionException {
+		final List<ResourcesUnit> units = new ArrayList<>();
+
+		if (resourcesSets == null || resourcesSets.isEmpty()) {
+			final String[] incls = (includes != null && includes.length > 0) ? includes : DEFAULT_INCLUDES;
+			final String[] excls = (excludes != null && excludes.length > 0) ? excludes : DEFAULT_EXCLUDES;
+
+			final Aggregation[] aggrs;
+			if (aggregations == null || aggregations.length < 1) {
+				aggrs = new Aggregation[1];
+				aggrs[0] = null;
+			} else {
+				aggrs = aggregations;
+			}
+
+			final List<ResourcesUnit> setUnits = new ArrayList<>(aggrs.length);
+			for (Aggregation aggr : aggrs) {
+				aggr = checkAggregation(aggr) ? null : aggr;
+
+				// evaluate inputDir
+				final File dir = (aggr != null && aggr.getInputDir() != null) ? aggr.getInputDir() : inputDir;
+
+				setUnits.add(new ResourcesUnit(dir, incls, excls, aggr, useDataUri ? getProjectImagesDirs() : null,
+						getCompilationLevel(compilationLevel), getWarningLevel(warningLevel), resolveSourceMap(null),
+						getLanguageIn(languageIn), getLanguageOut(languageOut)));
+			}
+
+			if (useChunks) {
+				groupIntoChunks(setUnits);
+			}
+
+			units.addAll(setUnits);
+		} else {
+			for (final ResourcesSet rs : resourcesSets) {
+				// iterate over all resources sets
+				final String[] incls;
+				if (rs.getIncludes() != null && rs.getIncludes().length > 0) {
+					incls = rs.getIncludes();
+				} else if (includes != null && includes.length > 0) {
+					incls = includes;
+				} else {
+					incls = DEFAULT_INCLUDES;
+				}
+
+				final String[] excls;
+				if (rs.getExcludes() != null && rs.getExcludes().length > 0) {
+					excls = rs.getExcludes();
+				} else if (excludes != null && excludes.length > 0) {
+					excls = excludes;
+				} else {
+					excls = DEFAULT_EXCLUDES;
+				}
 
 				final Aggregation[] aggrs;
-				if (aggregations == null || aggregations.length < 1) {
-					aggrs = new Aggregation[1];
-					aggrs[0] = null;
+				if (rs.getAggregations() == null || rs.getAggregations().length < 1) {
+					if (aggregations == null || aggregations.length < 1) {
+						aggrs = new Aggregation[1];
+						aggrs[0] = null;
+					} else {
+						aggrs = aggregations;
+					}
 				} else {
-					aggrs = aggregations;
+					aggrs = rs.getAggregations();
 				}
 
+				final List<ResourcesUnit> setUnits = new ArrayList<>(aggrs.length);
 				for (Aggregation aggr : aggrs) {
 					aggr = checkAggregation(aggr) ? null : aggr;
 
 					// evaluate inputDir
-					final File dir = (aggr != null && aggr.getInputDir() != null) ? aggr.getInputDir() : inputDir;
-
-					// prepare CSS und JavaScript files
-					final ResourcesScanner scanner = new ResourcesScanner();
-					scanner.scan(dir, incls, excls);
-
-					if (aggr != null && aggr.getOutputFile() == null) {
-						// subDirMode = true ==> aggregation for each subfolder
-						final File[] files = dir.listFiles();
-						if (files != null) {
-							for (final File file : files) {
-								if (file.isDirectory()) {
-									final ResourcesScanner subDirScanner = new ResourcesScanner();
-									subDirScanner.scan(file, DEFAULT_INCLUDES, DEFAULT_EXCLUDES);
-
-									final Set<File> subDirCssFiles = filterSubDirFiles(scanner.getCssFiles(),
-											subDirScanner.getCssFiles());
-									if (!subDirCssFiles.isEmpty()) {
-										final DataUriTokenResolver projectDataUriTokenResolver = (useDataUri
-												? getProjectDataUriTokenResolver()
-												: null);
-
-										// handle CSS files
-										processCssFiles(file, subDirCssFiles, projectDataUriTokenResolver,
-												getSubDirAggregation(file, aggr, ResourcesScanner.CSS_FILE_EXTENSION),
-												null);
-									}
-
-									final Set<File> subDirJsFiles = filterSubDirFiles(scanner.getJsFiles(),
-											subDirScanner.getJsFiles());
-									if (!subDirJsFiles.isEmpty()) {
-										// handle JavaScript files
-										processJsFiles(file, subDirJsFiles,
-												getSubDirAggregation(file, aggr, ResourcesScanner.JS_FILE_EXTENSION),
-												getCompilationLevel(compilationLevel), getWarningLevel(warningLevel),
-												resolveSourceMap(null), null, getLanguageIn(languageIn),
-												getLanguageOut(languageOut), emitUseStrict, processCommonJSModules,
-												gzip);
-									}
-								}
-							}
-						}
-					} else {
-						if (!scanner.getCssFiles().isEmpty()) {
-							final DataUriTokenResolver dataUriTokenResolver = (useDataUri
-									? getProjectDataUriTokenResolver()
-									: null);
+					File dir = (aggr != null && aggr.getInputDir() != null) ? aggr.getInputDir() : rs.getInputDir();
+					if (dir == null) {
+						dir = inputDir;
+					}
 
-							// handle CSS files
-							processCssFiles(dir, scanner.getCssFiles(), dataUriTokenResolver, aggr, suffix);
+					setUnits.add(new ResourcesUnit(dir, incls, excls, aggr,
+							useDataUri || rs.isUseDataUri() ? getProjectImagesDirs() : null, resolveCompilationLevel(rs),
+							resolveWarningLevel(rs), resolveSourceMap(rs), resolveLanguageIn(rs),
+							resolveLanguageOut(rs)));
+				}
+
+				if (useChunks || rs.isUseChunks()) {
+					groupIntoChunks(setUnits);
+				}
+
+				if (rs.getSizeBudget() != null) {
+					// the budget applies to the files of all units of the set
+					final String budgetName = rs.getSizeBudget().getName() != null ? rs.getSizeBudget().getName()
+							: "resourcesSet" + (resourcesSets.indexOf(rs) + 1);
+					for (final ResourcesUnit unit : setUnits) {
+						unit.setBudget = rs.getSizeBudget();
+						unit.setBudgetName = budgetName;
+					}
+				}
+
+				units.addAll(setUnits);
+			}
+		}
+
+		return units;
+	}
+
+	/**
+	 * Groups all units of a resources set aggregating into an output file with
+	 * compressing and without source maps, so that they are compiled together.
+	 */
+	private void groupIntoChunks(final List<ResourcesUnit> setUnits) {
+		final List<ResourcesUnit> chunkGroup = new ArrayList<>(setUnits.size());
+		for (final ResourcesUnit unit : setUnits) {
+			final Aggregation aggr = unit.aggregation;
+			if (aggr != null && aggr.getOutputFile() != null && !aggr.isWithoutCompress() && unit.sourceMap == null) {
+				chunkGroup.add(unit);
+			}
+		}
+
+		if (chunkGroup.size() > 1) {
+			for (final ResourcesUnit unit : chunkGroup) {
+				unit.chunkGroup = chunkGroup;
+			}
+		}
+	}
+
+	/**
+	 * Units touching the same directories (input, output, prepended file or
+	 * source maps) are processed one after another in configuration order as
+	 * earlier units may create or remove files seen by later ones. All other units
+	 * run concurrently. Logs are written in configuration order.
+	 */
+	private void processResourcesUnitsInParallel(final List<ResourcesUnit> units, final WorkerPool pool)
+			throws MojoExecutionException {
+		final LogSequencer logSequencer = new LogSequencer(getLog(), units.size());
+
+		final List<Callable<Void>> laneTasks = new ArrayList<>();
+		for (final List<Integer> lane : groupIntoLanes(units)) {
+			laneTasks.add(() -> {
+				for (final int index : lane) {
+					final ResourcesUnit unit = units.get(index);
+					try {
+						if (unit.chunkGroup == null) {
+							processResourcesUnit(unit, logSequencer.getLog(index), pool);
+						} else if (unit.chunkGroup.get(0) == unit) {
+							// the other units of the group are processed together with the first one
+							processChunkGroup(unit.chunkGroup, logSequencer.getLog(index), pool);
 						}
+					} finally {
+						logSequencer.complete(index);
+					}
+				}
+
+				return null;
+			});
+		}
 
-						if (!scanner.getJsFiles().isEmpty()) {
-							// handle JavaScript files
-							processJsFiles(dir, scanner.getJsFiles(), aggr, getCompilationLevel(compilationLevel),
-									getWarningLevel(warningLevel), resolveSourceMap(null), suffix,
-									getLanguageIn(languageIn), getLanguageOut(languageOut), emitUseStrict,
-									processCommonJSModules, gzip);
+		try {
+			pool.invokeAll(laneTasks);
+		} finally {
+			logSequencer.flushAll();
+		}
+	}
+
+	private List<List<Integer>> groupIntoLanes(final List<ResourcesUnit> units) {
+		final int[] lane = new int[units.size()];
+		for (int i = 0; i < lane.length; i++) {
+			lane[i] = i;
+			for (int j = 0; j < i; j++) {
+				if (lane[j] != lane[i] && (units.get(i).overlaps(units.get(j))
+						|| units.get(i).chunkGroup != null && units.get(i).chunkGroup == units.get(j).chunkGroup)) {
+					// merge both lanes into the earlier one
+					final int from = Math.max(lane[i], lane[j]);
+					final int to = Math.min(lane[i], lane[j]);
+					for (int k = 0; k <= i; k++) {
+						if (lane[k] == from) {
+							lane[k] = to;
 						}
 					}
 				}
+			}
+		}
+
+		final Map<Integer, List<Integer>> lanes = new LinkedHashMap<>();
+		for (int i = 0; i < lane.length; i++) {
+			lanes.computeIfAbsent(lane[i], k -> new ArrayList<>()).add(i);
+		}
+
+		return new ArrayList<>(lanes.values());
+	}
+
+	private void processResourcesUnit(final ResourcesUnit unit, final Log log, final WorkerPool pool)
+			throws MojoExecutionException {
+		final File dir = unit.dir;
+		final Aggregation aggr = unit.aggregation;
+
+		// prepare CSS und JavaScript files
+		final ResourcesScanner scanner = new ResourcesScanner(resourcesScanCache, parallelScan ? pool : null);
+		scanner.setTimingReport(timings);
+		scanner.scan(dir, unit.includes, unit.excludes);
+		if (unit.hasSizeBudget()) {
+			// taken before up to date files are removed from the scanner
+			unit.outputFiles = getOutputFiles(unit, scanner);
+		}
+
+		final String unitKey = buildState != null ? BuildState.computeKey(getConfiguration(unit)) : null;
+		if (unitKey != null && aggr != null) {
+			// an aggregation is stale as soon as one of its files changed
+			if (isUpToDate(unitKey, getStateFiles(unit, scanner))) {
+				resFound = true;
+				log.info("Skipping up to date aggregation of resources in " + dir);
+				return;
+			}
+		} else if (unitKey != null) {
+			removeUpToDateFiles(unitKey, scanner.getCssFiles());
+			removeUpToDateFiles(unitKey, scanner.getJsFiles());
+			if (scanner.getCssFiles().isEmpty() && scanner.getJsFiles().isEmpty()) {
+				log.info("Skipping up to date resources in " + dir);
+				return;
+			}
+		}
+
+		try {
+			processScannedFiles(unit, scanner, log, pool);
+		} finally {
+			if (aggr != null || StringUtils.isNotBlank(suffix) || unit.sourceMap != null) {
+				// aggregated, suffixed or source files may have been created or removed
+				resourcesScanCache.clear();
+			}
+		}
+
+		if (unitKey != null) {
+			// fingerprints are taken after the optimization because files may be optimized
+			// in place
+			if (aggr != null) {
+				updateState(unitKey, getStateFiles(unit, scanner), getImageFiles(unit));
 			} else {
-				for (final ResourcesSet rs : resourcesSets) {
-					// iterate over all resources sets
-					final String[] incls;
-					if (rs.getIncludes() != null && rs.getIncludes().length > 0) {
-						incls = rs.getIncludes();
-					} else if (includes != null && includes.length > 0) {
-						incls = includes;
-					} else {
-						incls = DEFAULT_INCLUDES;
+				updateFiles(unit, unitKey, scanner.getCssFiles());
+				updateFiles(unit, unitKey, scanner.getJsFiles());
+			}
+		}
+
+		if (buildContext != null) {
+			// let IDEs pick up the optimized resources
+			buildContext.refresh(dir);
+		}
+	}
+
+	/**
+	 * Scans all units of a chunk group, optimizes their CSS files as usual and
+	 * compiles their JavaScript aggregations in one compiler pass.
+	 */
+	private void processChunkGroup(final List<ResourcesUnit> chunkGroup, final Log log, final WorkerPool pool)
+			throws MojoExecutionException {
+		final List<ResourcesScanner> scanners = new ArrayList<>(chunkGroup.size());
+		final List<String> unitKeys = new ArrayList<>(chunkGroup.size());
+		boolean upToDate = buildState != null;
+		for (final ResourcesUnit unit : chunkGroup) {
+			final ResourcesScanner scanner = new ResourcesScanner(resourcesScanCache, parallelScan ? pool : null);
+			scanner.setTimingReport(timings);
+			scanner.scan(unit.dir, unit.includes, unit.excludes);
+			scanners.add(scanner);
+			if (unit.hasSizeBudget()) {
+				unit.outputFiles = getOutputFiles(unit, scanner);
+			}
+
+			final String unitKey = buildState != null ? BuildState.computeKey(getConfiguration(unit)) : null;
+			unitKeys.add(unitKey);
+			if (unitKey != null && !isUpToDate(unitKey, getStateFiles(unit, scanner))) {
+				upToDate = false;
+			}
+		}
+
+		if (upToDate) {
+			// chunks depend on each other, so they are only skipped all together
+			resFound = true;
+			log.info("Skipping up to date chunks of resources in " + chunkGroup.get(0).dir);
+			return;
+		}
+
+		try {
+			final List<ResourcesSetJsAdapter> chunks = new ArrayList<>(chunkGroup.size());
+			for (int i = 0; i < chunkGroup.size(); i++) {
+				final ResourcesUnit unit = chunkGroup.get(i);
+				final ResourcesScanner scanner = scanners.get(i);
+				if (!scanner.getCssFiles().isEmpty()) {
+					// handle CSS files
+					processCssFiles(unit.dir, scanner.getCssFiles(), createDataUriTokenResolver(unit, log),
+							unit.aggregation, suffix, log);
+				}
+
+				if (!scanner.getJsFiles().isEmpty()) {
+					resFound = true;
+					chunks.add(new ResourcesSetJsAdapter(unit.dir, scanner.getJsFiles(), unit.aggregation,
+							unit.compilationLevel, unit.warningLevel, unit.sourceMap, encoding, failOnWarning, suffix,
+							unit.languageIn, unit.languageOut, emitUseStrict, processCommonJSModules, gzip));
+				}
+			}
+
+			if (!chunks.isEmpty()) {
+				// handle JavaScript files
+				final ClosureCompilerOptimizer closureOptimizer = new ClosureCompilerOptimizer(log);
+				closureOptimizer.setPrecompressor(precompressor);
+				closureOptimizer.setTimingReport(timings);
+				closureOptimizer.optimizeChunks(chunks);
+
+				originalFilesSize.addAndGet(closureOptimizer.getTotalOriginalSize());
+				optimizedFilesSize.addAndGet(closureOptimizer.getTotalOptimizedSize());
+			}
+		} finally {
+			// aggregated files have been created and included files may have been removed
+			resourcesScanCache.clear();
+		}
+
+		for (int i = 0; i < chunkGroup.size(); i++) {
+			final ResourcesUnit unit = chunkGroup.get(i);
+			if (unitKeys.get(i) != null) {
+				updateState(unitKeys.get(i), getStateFiles(unit, scanners.get(i)), getImageFiles(unit));
+			}
+
+			if (buildContext != null) {
+				// let IDEs pick up the optimized resources
+				buildContext.refresh(unit.dir);
+			}
+		}
+	}
+
+	private void processScannedFiles(final ResourcesUnit unit, final ResourcesScanner scanner, final Log log,
+			final WorkerPool pool) throws MojoExecutionException {
+		final File dir = unit.dir;
+		final Aggregation aggr = unit.aggregation;
+
+		if (aggr != null && aggr.getOutputFile() == null) {
+			// subDirMode = true ==> aggregation for each subfolder
+			final File[] files = dir.listFiles(File::isDirectory);
+			if (files == null) {
+				return;
+			}
+
+			// subfolders are independent of each other
+			Arrays.sort(files);
+			final List<Log> subDirLogs = new ArrayList<>(files.length);
+			final List<Callable<Void>> subDirTasks = new ArrayList<>(files.length);
+			for (final File file : files) {
+				final Log subDirLog = pool.isParallel() ? new BufferedLog(log) : log;
+				subDirLogs.add(subDirLog);
+				subDirTasks.add(() -> {
+					processSubDir(unit, scanner, file, subDirLog, pool);
+					return null;
+				});
+			}
+
+			try {
+				pool.invokeAll(subDirTasks);
+			} finally {
+				for (final Log subDirLog : subDirLogs) {
+					if (subDirLog instanceof BufferedLog) {
+						((BufferedLog) subDirLog).flushTo(log);
 					}
+				}
+			}
+		} else {
+			if (!scanner.getCssFiles().isEmpty()) {
+				// handle CSS files
+				processCssFiles(dir, scanner.getCssFiles(), createDataUriTokenResolver(unit, log), aggr, suffix, log);
+			}
 
-					final String[] excls;
-					if (rs.getExcludes() != null && rs.getExcludes().length > 0) {
-						excls = rs.getExcludes();
-					} else if (excludes != null && excludes.length > 0) {
-						excls = excludes;
-					} else {
-						excls = DEFAULT_EXCLUDES;
+			if (!scanner.getJsFiles().isEmpty()) {
+				// handle JavaScript files
+				processJsFiles(dir, scanner.getJsFiles(), aggr, unit.compilationLevel, unit.warningLevel,
+						unit.sourceMap, suffix, unit.languageIn, unit.languageOut, emitUseStrict,
+						processCommonJSModules, gzip, log, pool);
+			}
+		}
+	}
+
+	/**
+	 * Files written by the optimization of the given scanned unit.
+	 */
+	private List<File> getOutputFiles(final ResourcesUnit unit, final ResourcesScanner scanner) {
+		final List<File> outputFiles = new ArrayList<>();
+		final Aggregation aggr = unit.aggregation;
+		if (aggr == null) {
+			// optimized in place or into a file with the suffix
+			for (final File file : scanner.getCssFiles()) {
+				final List<File> stateFiles = getStateFiles(file);
+				outputFiles.add(stateFiles.get(stateFiles.size() - 1));
+			}
+
+			for (final File file : scanner.getJsFiles()) {
+				final List<File> stateFiles = getStateFiles(file);
+				outputFiles.add(stateFiles.get(stateFiles.size() - 1));
+			}
+		} else if (aggr.getOutputFile() != null) {
+			if (!scanner.getCssFiles().isEmpty() || !scanner.getJsFiles().isEmpty()) {
+				outputFiles.add(aggr.getOutputFile());
+			}
+		} else {
+			// subDirMode = true ==> aggregation for each subfolder
+			final File[] subDirs = unit.dir.listFiles(File::isDirectory);
+			if (subDirs != null) {
+				Arrays.sort(subDirs);
+				for (final File subDir : subDirs) {
+					if (!filterSubDirFiles(scanner.getCssFiles(), subDir, ResourcesScanner.CSS_FILE_EXTENSION)
+							.isEmpty()) {
+						outputFiles.add(getSubDirAggregation(subDir, aggr, ResourcesScanner.CSS_FILE_EXTENSION)
+								.getOutputFile());
 					}
 
-					final Aggregation[] aggrs;
-					if (rs.getAggregations() == null || rs.getAggregations().length < 1) {
-						if (aggregations == null || aggregations.length < 1) {
-							aggrs = new Aggregation[1];
-							aggrs[0] = null;
-						} else {
-							aggrs = aggregations;
-						}
-					} else {
-						aggrs = rs.getAggregations();
+					if (!filterSubDirFiles(scanner.getJsFiles(), subDir, ResourcesScanner.JS_FILE_EXTENSION)
+							.isEmpty()) {
+						outputFiles.add(getSubDirAggregation(subDir, aggr, ResourcesScanner.JS_FILE_EXTENSION)
+								.getOutputFile());
 					}
+				}
+			}
+		}
 
-					for (Aggregation aggr : aggrs) {
-						aggr = checkAggregation(aggr) ? null : aggr;
+		return outputFiles;
+	}
 
-						// evaluate inputDir
-						File dir = (aggr != null && aggr.getInputDir() != null) ? aggr.getInputDir() : rs.getInputDir();
-						if (dir == null) {
-							dir = inputDir;
-						}
+	/**
+	 * Measures the optimized files of all units with a size budget and compares
+	 * them with the budgets and the size baseline.
+	 *
+	 * @return messages of exceeded budgets
+	 */
+	private List<String> checkSizeBudgets(final List<ResourcesUnit> units) throws IOException, MojoExecutionException {
+		final SizeBudgets budgets = new SizeBudgets(sizeBaselineFile, getGzipLevel(gzipLevel));
+		for (final ResourcesUnit unit : units) {
+			if (unit.setBudget != null) {
+				budgets.add(unit.setBudgetName, unit.setBudget, unit.outputFiles);
+			}
 
-						// prepare CSS und JavaScript files
-						final ResourcesScanner scanner = new ResourcesScanner();
-						scanner.scan(dir, incls, excls);
-
-						if (aggr != null && aggr.getOutputFile() == null) {
-							// subDirMode = true ==> aggregation for each subfolder
-							final File[] files = dir.listFiles();
-							if (files != null) {
-								for (final File file : files) {
-									if (file.isDirectory()) {
-										final ResourcesScanner subDirScanner = new ResourcesScanner();
-										subDirScanner.scan(file, DEFAULT_INCLUDES, DEFAULT_EXCLUDES);
-
-										final Set<File> subDirCssFiles = filterSubDirFiles(scanner.getCssFiles(),
-												subDirScanner.getCssFiles());
-										if (!subDirCssFiles.isEmpty()) {
-											final DataUriTokenResolver dataUriTokenResolver = (useDataUri
-													|| rs.isUseDataUri() ? getProjectDataUriTokenResolver() : null);
-
-											// handle CSS files
-											processCssFiles(file, subDirCssFiles, dataUriTokenResolver,
-													getSubDirAggregation(file, aggr,
-															ResourcesScanner.CSS_FILE_EXTENSION),
-													null);
-										}
-
-										final Set<File> subDirJsFiles = filterSubDirFiles(scanner.getJsFiles(),
-												subDirScanner.getJsFiles());
-										if (!subDirJsFiles.isEmpty()) {
-											// handle JavaScript files
-											processJsFiles(file, subDirJsFiles,
-													getSubDirAggregation(file, aggr,
-															ResourcesScanner.JS_FILE_EXTENSION),
-													resolveCompilationLevel(rs), resolveWarningLevel(rs),
-													resolveSourceMap(rs), null, resolveLanguageIn(rs),
-													resolveLanguageOut(rs), emitUseStrict, processCommonJSModules,
-													gzip);
-										}
-									}
-								}
-							}
-						} else {
-							if (!scanner.getCssFiles().isEmpty()) {
-								final DataUriTokenResolver dataUriTokenResolver = (useDataUri || rs.isUseDataUri()
-										? getProjectDataUriTokenResolver()
-										: null);
-
-								// handle CSS files
-								processCssFiles(dir, scanner.getCssFiles(), dataUriTokenResolver, aggr, suffix);
-							}
-
-							if (!scanner.getJsFiles().isEmpty()) {
-								// handle JavaScript files
-								processJsFiles(dir, scanner.getJsFiles(), aggr, resolveCompilationLevel(rs),
-										resolveWarningLevel(rs), resolveSourceMap(rs), suffix, resolveLanguageIn(rs),
-										resolveLanguageOut(rs), emitUseStrict, processCommonJSModules, gzip);
-							}
-						}
-					}
+			final SizeBudget aggrBudget = unit.aggregation != null ? unit.aggregation.getSizeBudget() : null;
+			if (aggrBudget != null) {
+				// in subDirMode every output file has its own budget
+				for (final File outputFile : unit.outputFiles) {
+					budgets.add(getBudgetName(unit, aggrBudget, outputFile), aggrBudget, List.of(outputFile));
 				}
 			}
-		} catch (final MojoExecutionException e) {
-			throw e;
-		} catch (final Exception e) {
-			throw new MojoExecutionException("Error while executing the mojo " + getClass(), e);
 		}
 
-		if (!resFound) {
-			getLog().info("No resources found for optimization.");
+		if (budgets.isEmpty()) {
+			return List.of();
+		}
 
-			return;
+		getLog().info("=== Size budgets ========================================");
+		final List<String> exceeded = budgets.check(getLog(), !updateSizeBaseline);
+		if (updateSizeBaseline) {
+			budgets.saveBaseline();
+			getLog().info("Size baseline written to " + sizeBaselineFile);
 		}
 
-		// getLog().info("Optimization of resources has been finished successfully.");
-		outputStatistic();
+		getLog().info("=========================================================");
+		return exceeded;
 	}
 
-	private void processCssFiles(final File inputDir, final Set<File> cssFiles,
-			final DataUriTokenResolver projectDataUriTokenResolver, final Aggregation aggr, final String suffix)
+	/**
+	 * Name of the budget of an aggregation output file in the size baseline,
+	 * the configured name or the path relative to the input directory or else to
+	 * the project. Absolute paths would differ between checkouts of the committed
+	 * baseline.
+	 */
+	private String getBudgetName(final ResourcesUnit unit, final SizeBudget budget, final File outputFile)
 			throws MojoExecutionException {
+		if (budget.getName() != null) {
+			return unit.aggregation.getOutputFile() == null ? budget.getName() + '/' + outputFile.getName()
+					: budget.getName();
+		}
+
+		final Path filePath = outputFile.getAbsoluteFile().toPath().normalize();
+		final Path dirPath = unit.dir.getAbsoluteFile().toPath().normalize();
+		if (filePath.startsWith(dirPath)) {
+			return dirPath.relativize(filePath).toString().replace(File.separatorChar, '/');
+		}
+
+		if (basedir != null) {
+			final Path basedirPath = basedir.getAbsoluteFile().toPath().normalize();
+			if (filePath.startsWith(basedirPath)) {
+				return basedirPath.relativize(filePath).toString().replace(File.separatorChar, '/');
+			}
+		}
+
+		throw new MojoExecutionException("The size budget of " + outputFile
+				+ " needs a name because the file is outside of the project.");
+	}
+
+	private void removeUpToDateFiles(final String unitKey, final Set<File> files) {
+		final Iterator<File> iter = files.iterator();
+		while (iter.hasNext()) {
+			final File file = iter.next();
+			if (isUpToDate(getFileKey(unitKey, file), getStateFiles(file))) {
+				resFound = true;
+				iter.remove();
+			}
+		}
+	}
+
+	private void updateFiles(final ResourcesUnit unit, final String unitKey, final Set<File> files) {
+		for (final File file : files) {
+			updateState(getFileKey(unitKey, file), getStateFiles(file),
+					unit.imageFiles.getOrDefault(file, Collections.emptySet()));
+		}
+	}
+
+	/**
+	 * Compares the fingerprint of the given files and the images inlined by the
+	 * last build with the recorded one.
+	 */
+	private boolean isUpToDate(final String key, final List<File> stateFiles) {
+		final List<File> files = new ArrayList<>(stateFiles);
+		files.addAll(buildState.getDependencies(key));
+		return buildState.isUpToDate(key, BuildState.computeFingerprint(files));
+	}
+
+	/**
+	 * Records the fingerprint of the given files and the inlined images, which
+	 * are only known after the optimization.
+	 */
+	private void updateState(final String key, final List<File> stateFiles, final Collection<File> imageFiles) {
+		final List<File> dependencies = new ArrayList<>(imageFiles);
+		Collections.sort(dependencies);
+		final List<File> files = new ArrayList<>(stateFiles);
+		files.addAll(dependencies);
+		buildState.update(key, BuildState.computeFingerprint(files), dependencies);
+	}
+
+	/**
+	 * Images inlined as Data URIs into any CSS file of the unit.
+	 */
+	private Set<File> getImageFiles(final ResourcesUnit unit) {
+		final Set<File> imageFiles = new LinkedHashSet<>();
+		for (final Set<File> files : unit.imageFiles.values()) {
+			imageFiles.addAll(files);
+		}
+
+		return imageFiles;
+	}
+
+	private String getFileKey(final String unitKey, final File file) {
+		return unitKey + ':' + file.getAbsolutePath();
+	}
+
+	/**
+	 * Input and output files of a single optimized file.
+	 */
+	private List<File> getStateFiles(final File file) {
+		if (StringUtils.isBlank(suffix)) {
+			return List.of(file);
+		}
+
+		final String path = file.getPath();
+		final String extension = FileUtils.extension(path);
+		return List.of(file, new File(FileUtils.removeExtension(path) + suffix + "." + extension));
+	}
+
+	/**
+	 * Input and output files of an aggregation.
+	 */
+	private List<File> getStateFiles(final ResourcesUnit unit, final ResourcesScanner scanner) {
+		final List<File> files = new ArrayList<>(scanner.getCssFiles());
+		files.addAll(scanner.getJsFiles());
+
+		final Aggregation aggr = unit.aggregation;
+		if (aggr.getPrependedFile() != null) {
+			files.add(aggr.getPrependedFile());
+		}
+
+		if (aggr.getOutputFile() != null) {
+			files.add(aggr.getOutputFile());
+		} else {
+			final File[] subDirs = unit.dir.listFiles(File::isDirectory);
+			if (subDirs != null) {
+				Arrays.sort(subDirs);
+				for (final File subDir : subDirs) {
+					files.add(new File(subDir, subDir.getName() + "." + ResourcesScanner.CSS_FILE_EXTENSION));
+					files.add(new File(subDir, subDir.getName() + "." + ResourcesScanner.JS_FILE_EXTENSION));
+				}
+			}
+		}
+
+		return files;
+	}
+
+	/**
+	 * All settings influencing the output of a unit.
+	 */
+	private String getConfiguration(final ResourcesUnit unit) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(unit.dir.getAbsolutePath()).append('|').append(Arrays.toString(unit.includes)).append('|')
+				.append(Arrays.toString(unit.excludes)).append('|').append(unit.imagesDirs).append('|')
+				.append(unit.compilationLevel).append('|').append(unit.warningLevel).append('|')
+				.append(unit.languageIn).append('|').append(unit.languageOut).append('|').append(suffix).append('|')
+				.append(encoding).append('|').append(cssEngine).append('|').append(emitUseStrict).append('|')
+				.append(processCommonJSModules).append('|').append(gzip).append('|').append(gzipLevel).append('|')
+				.append(gzipMinSize).append('|').append(gzipMinSavings).append('|').append(gzipIterations);
+
+		if (unit.imagesDirs != null) {
+			sb.append("|dataUri|").append(dataUriMaxSize).append('|').append(dataUriMaxSizesByExtension);
+		}
+
+		final Aggregation aggr = unit.aggregation;
+		if (aggr != null) {
+			sb.append("|aggregation|").append(aggr.getOutputFile()).append('|').append(aggr.getPrependedFile())
+					.append('|').append(aggr.isSubDirMode()).append('|').append(aggr.isRemoveIncluded()).append('|')
+					.append(aggr.isRemoveEmptyDirectories()).append('|').append(aggr.isWithoutCompress());
+		}
+
+		if (unit.chunkGroup != null) {
+			sb.append("|chunks|").append(unit.chunkGroup.size());
+		}
+
+		final SourceMap smap = unit.sourceMap;
+		if (smap != null) {
+			sb.append("|sourceMap|").append(smap.getOutputDir()).append('|').append(smap.getSourceMapRoot())
+					.append('|').append(smap.getFormat()).append('|').append(smap.getDetailLevel());
+		}
+
+		return sb.toString();
+	}
+
+	private void processSubDir(final ResourcesUnit unit, final ResourcesScanner scanner, final File subDir,
+			final Log log, final WorkerPool pool) throws MojoExecutionException {
+		// the subfolder is part of the already scanned directory
+		final Set<File> subDirCssFiles = filterSubDirFiles(scanner.getCssFiles(), subDir,
+				ResourcesScanner.CSS_FILE_EXTENSION);
+		if (!subDirCssFiles.isEmpty()) {
+			// handle CSS files
+			processCssFiles(subDir, subDirCssFiles, createDataUriTokenResolver(unit, log),
+					getSubDirAggregation(subDir, unit.aggregation, ResourcesScanner.CSS_FILE_EXTENSION), null, log);
+		}
+
+		final Set<File> subDirJsFiles = filterSubDirFiles(scanner.getJsFiles(), subDir,
+				ResourcesScanner.JS_FILE_EXTENSION);
+		if (!subDirJsFiles.isEmpty()) {
+			// handle JavaScript files
+			processJsFiles(subDir, subDirJsFiles,
+					getSubDirAggregation(subDir, unit.aggregation, ResourcesScanner.JS_FILE_EXTENSION),
+					unit.compilationLevel, unit.warningLevel, unit.sourceMap, null, unit.languageIn,
+					unit.languageOut, emitUseStrict, processCommonJSModules, gzip, log, pool);
+		}
+	}
+
+	private void processCssFiles(final File inputDir, final Set<File> cssFiles,
+			final DataUriTokenResolver projectDataUriTokenResolver, final Aggregation aggr, final String suffix,
+			final Log log) throws MojoExecutionException {
 		resFound = true;
 		final ResourcesSetAdapter rsa = new ResourcesSetCssAdapter(inputDir, cssFiles, projectDataUriTokenResolver,
-				aggr, encoding, failOnWarning, suffix);
+				aggr, encoding, failOnWarning, suffix, getCssEngine(cssEngine), gzip);
 
-		final YuiCompressorOptimizer yuiOptimizer = new YuiCompressorOptimizer(getLog());
+		final YuiCompressorOptimizer yuiOptimizer = new YuiCompressorOptimizer(log);
+		yuiOptimizer.setResultCache(resultCache);
+		yuiOptimizer.setPrecompressor(precompressor);
+		yuiOptimizer.setTimingReport(timings);
 		yuiOptimizer.optimize(rsa);
 
-		originalFilesSize += yuiOptimizer.getTotalOriginalSize();
-		optimizedFilesSize += yuiOptimizer.getTotalOptimizedSize();
+		originalFilesSize.addAndGet(yuiOptimizer.getTotalOriginalSize());
+		optimizedFilesSize.addAndGet(yuiOptimizer.getTotalOptimizedSize());
 	}
 
 	private void processJsFiles(final File inputDir, final Set<File> jsFiles, final Aggregation aggr,
 			final CompilationLevel compilationLevel, final WarningLevel warningLevel, final SourceMap sourceMap,
 			final String suffix, final LanguageMode languageIn, final LanguageMode languageOut, boolean emitUseStrict,
-			boolean processCommonJSModules, boolean isGzip) throws MojoExecutionException {
+			boolean processCommonJSModules, boolean isGzip, final Log log, final WorkerPool pool)
+			throws MojoExecutionException {
 		resFound = true;
 		final ResourcesSetAdapter rsa = new ResourcesSetJsAdapter(inputDir, jsFiles, aggr, compilationLevel,
 				warningLevel, sourceMap, encoding, failOnWarning, suffix, languageIn, languageOut, emitUseStrict,
 				processCommonJSModules, isGzip);
 
-		final ClosureCompilerOptimizer closureOptimizer = new ClosureCompilerOptimizer(getLog());
+		final ClosureCompilerOptimizer closureOptimizer = new ClosureCompilerOptimizer(log);
+		closureOptimizer.setResultCache(resultCache);
+		closureOptimizer.setPrecompressor(precompressor);
+		closureOptimizer.setTimingReport(timings);
+		if (parallelCompilation) {
+			closureOptimizer.setWorkerPool(pool);
+		}
+
 		closureOptimizer.optimize(rsa);
 
-		originalFilesSize += closureOptimizer.getTotalOriginalSize();
-		optimizedFilesSize += closureOptimizer.getTotalOptimizedSize();
+		originalFilesSize.addAndGet(closureOptimizer.getTotalOriginalSize());
+		optimizedFilesSize.addAndGet(closureOptimizer.getTotalOptimizedSize());
 	}
 
 	private boolean checkAggregation(final Aggregation aggregation) throws MojoExecutionException {
@@ -590,6 +1354,64 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 		}
 	}
 
+	private CssCompressor.Engine getCssEngine(final String cssEngine) throws MojoExecutionException {
+		try {
+			return CssCompressor.Engine.valueOf(cssEngine);
+		} catch (final Exception e) {
+			final String errMsg = "CSS engine '" + cssEngine + "' is wrong. Valid constants are: "
+					+ Arrays.toString(CssCompressor.Engine.values());
+			if (failOnWarning) {
+				throw new MojoExecutionException(errMsg);
+			} else {
+				getLog().warn(errMsg);
+				getLog().warn("Using 'REGEX' as CSS engine");
+
+				return CssCompressor.Engine.REGEX;
+			}
+		}
+	}
+
+	private Map<String, Long> getDataUriMaxSizes(final Map<String, String> dataUriMaxSizes)
+			throws MojoExecutionException {
+		final Map<String, Long> maxSizes = new LinkedHashMap<>();
+		if (dataUriMaxSizes == null) {
+			return maxSizes;
+		}
+
+		for (final Map.Entry<String, String> entry : dataUriMaxSizes.entrySet()) {
+			try {
+				maxSizes.put(entry.getKey(), Long.valueOf(entry.getValue().trim()));
+			} catch (final Exception e) {
+				final String errMsg = "Data URI maximum size '" + entry.getValue() + "' for '" + entry.getKey()
+						+ "' is wrong. Valid values are numbers of bytes";
+				if (failOnWarning) {
+					throw new MojoExecutionException(errMsg);
+				} else {
+					getLog().warn(errMsg);
+					getLog().warn("Using dataUriMaxSize for '" + entry.getKey() + "'");
+				}
+			}
+		}
+
+		return maxSizes;
+	}
+
+	private int getGzipLevel(final int gzipLevel) throws MojoExecutionException {
+		if (Precompressor.isValidLevel(gzipLevel)) {
+			return gzipLevel;
+		}
+
+		final String errMsg = "Gzip level '" + gzipLevel + "' is wrong. Valid values are 1 to 9";
+		if (failOnWarning) {
+			throw new MojoExecutionException(errMsg);
+		} else {
+			getLog().warn(errMsg);
+			getLog().warn("Using the best compression level 9");
+		}
+
+		return Deflater.BEST_COMPRESSION;
+	}
+
 	private LanguageMode getLanguageIn(final String languageIn) throws MojoExecutionException {
 		try {
 			return LanguageMode.valueOf(languageIn);
@@ -624,9 +1446,9 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 		}
 	}
 
-	private DataUriTokenResolver getProjectDataUriTokenResolver() {
-		if (projectDataUriTokenResolver != null) {
-			return projectDataUriTokenResolver;
+	private synchronized List<File> getProjectImagesDirs() {
+		if (projectImagesDirs != null) {
+			return projectImagesDirs;
 		}
 
 		final String[] arrImagesDir = imagesDir.split(",");
@@ -639,28 +1461,59 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 			}
 		}
 
-		projectDataUriTokenResolver = new DataUriTokenResolver(getLog(), fileImagesDir);
+		projectImagesDirs = fileImagesDir;
 
-		return projectDataUriTokenResolver;
+		return projectImagesDirs;
 	}
 
-	private Set<File> filterSubDirFiles(final Set<File> resSetFiles, final Set<File> subDirFiles) {
+	private DataUriTokenResolver createDataUriTokenResolver(final ResourcesUnit unit, final Log log) {
+		if (unit.imagesDirs == null) {
+			return null;
+		}
+
+		// resolved by known project-relative directories
+		final DataUriTokenResolver resolver = new DataUriTokenResolver(log, unit.imagesDirs, dataUriCache,
+				dataUriMaxSize, dataUriMaxSizesByExtension);
+		resolver.setTimingReport(timings);
+		if (buildState != null) {
+			resolver.setDependencies(unit.imageFiles);
+		}
+
+		return resolver;
+	}
+
+	/**
+	 * Selects the files below the given subfolder which the default includes
+	 * match, ordered like a scan of the subfolder would order them.
+	 */
+	private Set<File> filterSubDirFiles(final Set<File> resSetFiles, final File subDir, final String extension) {
 		final Set<File> filteredFiles = new LinkedHashSet<>();
 
-		if (subDirFiles == null || subDirFiles.isEmpty() || resSetFiles == null || resSetFiles.isEmpty()) {
+		if (resSetFiles == null || resSetFiles.isEmpty()) {
 			return filteredFiles;
 		}
 
-		for (final File subDirFile : subDirFiles) {
-			if (resSetFiles.contains(subDirFile)) {
-				filteredFiles.add(subDirFile);
+		final String prefix = subDir.getPath() + File.separator;
+		final List<String> paths = new ArrayList<>();
+		for (final File resSetFile : resSetFiles) {
+			final String path = resSetFile.getPath();
+			if (path.startsWith(prefix) && path.endsWith("." + extension)) {
+				paths.add(path);
 			}
 		}
 
+		// sort files by pathnames lexicographically
+		Collections.sort(paths);
+		for (final String path : paths) {
+			filteredFiles.add(new File(path));
+		}
+
 		return filteredFiles;
 	}
 
 	private void outputStatistic() {
+		final long originalFilesSize = this.originalFilesSize.get();
+		final long optimizedFilesSize = this.optimizedFilesSize.get();
 		final String originalSizeTotal;
 		final String optimizedSizeTotal;
 		final long oneMB = 1024 * 1024;
@@ -691,6 +1544,20 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 		}
 	}
 
+	private void outputTimingReport() {
+		getLog().info("=== Timing ==============================================");
+		timings.logSummary(getLog());
+		getLog().info("=========================================================");
+
+		try {
+			timings.write(timingReportDir);
+			getLog().info("Timing report written to " + new File(timingReportDir, TimingReport.JSON_FILE));
+		} catch (final IOException e) {
+			// the report must not fail an otherwise successful build
+			getLog().warn("Timing report could not be written to " + timingReportDir + ": " + e.getMessage());
+		}
+	}
+
 	private double round(final double value, final int places) {
 		final double roundedValue;
 		final double factor = Math.pow(10.0, places);
@@ -699,4 +1566,126 @@ public class ResourcesOptimizerMojo extends AbstractMojo {
 
 		return roundedValue;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * One aggregation (or no aggregation) of a resources set with its resolved
+	 * settings.
+	 */
+	private static final class ResourcesUnit {
+
+		private final File dir;
+
+		private final String[] includes;
+
+		private final String[] excludes;
+
+		private final Aggregation aggregation;
+
+		private final List<File> imagesDirs;
+
+		private final CompilationLevel compilationLevel;
+
+		private final WarningLevel warningLevel;
+
+		private final SourceMap sourceMap;
+
+		private final LanguageMode languageIn;
+
+		private final LanguageMode languageOut;
+
+		/**
+		 * Units of the same resources set compiled together as chunks or null.
+		 */
+		private List<ResourcesUnit> chunkGroup;
+
+		/**
+		 * Size budget of the resources set or null.
+		 */
+		private SizeBudget setBudget;
+
+		private String setBudgetName;
+
+		/**
+		 * Optimized files of this unit, only collected if a size budget applies.
+		 */
+		private List<File> outputFiles = List.of();
+
+		/**
+		 * Candidate images of the Data URIs of every CSS file, only recorded in
+		 * incremental builds.
+		 */
+		private final Map<File, Set<File>> imageFiles = new ConcurrentHashMap<>();
+
+		private boolean hasSizeBudget() {
+			return setBudget != null || (aggregation != null && aggregation.getSizeBudget() != null);
+		}
+
+		private ResourcesUnit(final File dir, final String[] includes, final String[] excludes,
+				final Aggregation aggregation, final List<File> imagesDirs, final CompilationLevel compilationLevel,
+				final WarningLevel warningLevel, final SourceMap sourceMap, final LanguageMode languageIn,
+				final LanguageMode languageOut) {
+			this.dir = dir;
+			this.includes = includes;
+			this.excludes = excludes;
+			this.aggregation = aggregation;
+			this.imagesDirs = imagesDirs;
+			this.compilationLevel = compilationLevel;
+			this.warningLevel = warningLevel;
+			this.sourceMap = sourceMap;
+			this.languageIn = languageIn;
+			this.languageOut = languageOut;
+		}
+
+		/**
+		 * Paths read or written by this unit.
+		 */
+		private List<Path> getFootprint() {
+			final List<Path> paths = new ArrayList<>(3);
+			paths.add(toPath(dir));
+			if (aggregation != null) {
+				if (aggregation.getOutputFile() != null) {
+					paths.add(toPath(aggregation.getOutputFile()));
+				}
+
+				if (aggregation.getPrependedFile() != null) {
+					paths.add(toPath(aggregation.getPrependedFile()));
+				}
+			}
+
+			return paths;
+		}
+
+		private boolean overlaps(final ResourcesUnit other) {
+			final List<Path> footprint = getFootprint();
+			final List<Path> otherFootprint = other.getFootprint();
+			if (overlaps(footprint, otherFootprint)) {
+				return true;
+			}
+
+			// source maps of several units may share one output directory, it only matters
+			// if the directory is part of the resources of another unit
+			if (sourceMap != null && overlaps(List.of(toPath(new File(sourceMap.getOutputDir()))), otherFootprint)) {
+				return true;
+			}
+
+			return other.sourceMap != null
+					&& overlaps(footprint, List.of(toPath(new File(other.sourceMap.getOutputDir()))));
+		}
+
+		private static boolean overlaps(final List<Path> paths, final List<Path> otherPaths) {
+			for (final Path path : paths) {
+				for (final Path otherPath : otherPaths) {
+					if (path.startsWith(otherPath) || otherPath.startsWith(path)) {
+						return true;
+					}
+				}
+			}
+
+			return false;
+		}
+
+		private static Path toPath(final File file) {
+			return file.toPath().toAbsolutePath().normalize();
+		}
+	}
+}
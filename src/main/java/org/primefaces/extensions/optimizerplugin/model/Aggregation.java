@@ -76,6 +76,13 @@ public class Aggregation {
      */
     private File prependedFile;
 
+    /**
+     * Size budget of the output file.
+     *
+     * @parameter
+     */
+    private SizeBudget sizeBudget;
+
     public File getInputDir() {
         return inputDir;
     }
@@ -131,4 +138,12 @@ public class Aggregation {
     public void setPrependedFile(File prependedFile) {
         this.prependedFile = prependedFile;
     }
+
+    public SizeBudget getSizeBudget() {
+        return sizeBudget;
+    }
+
+    public void setSizeBudget(SizeBudget sizeBudget) {
+        this.sizeBudget = sizeBudget;
+    }
 }
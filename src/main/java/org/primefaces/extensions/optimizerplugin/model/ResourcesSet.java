@@ -49,12 +49,19 @@ public class ResourcesSet {
     private String warningLevel;
 
     /**
-     * Flag if images referenced in CSS files (size < 32KB) should be converted to data URIs.
+     * Flag if images referenced in CSS files (size up to dataUriMaxSize) should be converted to data URIs.
      *
      * @parameter
      */
     private boolean useDataUri;
 
+    /**
+     * Flag if all JavaScript aggregations of this resources set should be compiled in one compiler pass as chunks.
+     *
+     * @parameter
+     */
+    private boolean useChunks;
+
     /**
      * Files to be included. Files selectors follow patterns specified in {@link org.codehaus.plexus.util.DirectoryScanner}.
      *
@@ -97,6 +104,13 @@ public class ResourcesSet {
      */
     private String languageOut;
 
+    /**
+     * Size budget of all optimized files of this resources set.
+     *
+     * @parameter
+     */
+    private SizeBudget sizeBudget;
+
     public File getInputDir() {
         return inputDir;
     }
@@ -129,6 +143,14 @@ public class ResourcesSet {
         this.useDataUri = useDataUri;
     }
 
+    public boolean isUseChunks() {
+        return useChunks;
+    }
+
+    public void setUseChunks(boolean useChunks) {
+        this.useChunks = useChunks;
+    }
+
     public String[] getIncludes() {
         return includes;
     }
@@ -176,4 +198,12 @@ public class ResourcesSet {
     public void setLanguageOut(String languageOut) {
         this.languageOut = languageOut;
     }
+
+    public SizeBudget getSizeBudget() {
+        return sizeBudget;
+    }
+
+    public void setSizeBudget(SizeBudget sizeBudget) {
+        this.sizeBudget = sizeBudget;
+    }
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.model;
+
+/**
+ * Class representing a size budget of optimized resources. A budget of an aggregation applies to its output file, in
+ * subDirMode to the output file of every sub-folder. A budget of a resources set applies to the sum of all its
+ * optimized files. Limits less than 1 are not checked.
+ */
+public class SizeBudget {
+
+    /**
+     * Name of the budget in the size baseline. Defaults to the path of the output file relative to the input
+     * directory, or else to the project directory, for aggregations and to the position of the resources set for
+     * resources sets. Required for aggregations with an output file outside of the project.
+     *
+     * @parameter
+     */
+    private String name;
+
+    /**
+     * Maximum size of the optimized resources in bytes.
+     *
+     * @parameter
+     */
+    private long maxSize;
+
+    /**
+     * Maximum size of the gzipped optimized resources in bytes.
+     *
+     * @parameter
+     */
+    private long maxGzipSize;
+
+    /**
+     * Maximum growth in percent compared with the size baseline, checked for the size and the gzipped size.
+     *
+     * @parameter
+     */
+    private int maxGrowth;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxGzipSize() {
+        return maxGzipSize;
+    }
+
+    public void setMaxGzipSize(long maxGzipSize) {
+        this.maxGzipSize = maxGzipSize;
+    }
+
+    public int getMaxGrowth() {
+        return maxGrowth;
+    }
+
+    public void setMaxGrowth(int maxGrowth) {
+        this.maxGrowth = maxGrowth;
+    }
+}
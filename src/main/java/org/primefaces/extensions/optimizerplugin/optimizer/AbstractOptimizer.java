@@ -18,28 +18,37 @@
 
 package org.primefaces.extensions.optimizerplugin.optimizer;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.Deflater;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.primefaces.extensions.optimizerplugin.util.OptimizerEvents;
+import org.primefaces.extensions.optimizerplugin.util.Precompressor;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetAdapter;
+import org.primefaces.extensions.optimizerplugin.util.ResultCache;
+import org.primefaces.extensions.optimizerplugin.util.TimingReport;
+import org.primefaces.extensions.optimizerplugin.util.WorkerPool;
 
-import com.google.common.io.CharSink;
 import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
 
@@ -52,12 +61,47 @@ public abstract class AbstractOptimizer {
 
 	protected static final String OUTPUT_FILE_SUFFIX = ".source";
 
-	private long sizeTotalOriginal = 0;
+	private static final int BUFFER_SIZE = 8192;
 
-	private long sizeTotalOptimized = 0;
+	/**
+	 * Smaller files are cheaper to copy through the writer than to transfer with
+	 * additional system calls.
+	 */
+	private static final long TRANSFER_MIN_SIZE = 16 * 1024;
+
+	private final AtomicLong sizeTotalOriginal = new AtomicLong();
+
+	private final AtomicLong sizeTotalOptimized = new AtomicLong();
 
 	protected final Log log;
 
+	/**
+	 * Pool for optimizing single files concurrently, null means sequential processing.
+	 */
+	protected WorkerPool workerPool;
+
+	/**
+	 * Cache of optimized resources, null means no caching.
+	 */
+	protected ResultCache resultCache;
+
+	/**
+	 * Compressor of gzipped variants, null means synchronous compression with the
+	 * best compression.
+	 */
+	protected Precompressor precompressor;
+
+	/**
+	 * Iterations of the exhaustive deflate encoder used by synchronous compression,
+	 * 0 means the built-in deflater only.
+	 */
+	protected int gzipIterations;
+
+	/**
+	 * Report of the durations per phase and file, null means no timing.
+	 */
+	protected TimingReport timingReport;
+
 	protected AbstractOptimizer(Log log) {
 		this.log = log;
 	}
@@ -65,11 +109,42 @@ public abstract class AbstractOptimizer {
 	public abstract void optimize(final ResourcesSetAdapter rsa) throws MojoExecutionException;
 
 	public long getTotalOriginalSize() {
-		return sizeTotalOriginal;
+		return sizeTotalOriginal.get();
 	}
 
 	public long getTotalOptimizedSize() {
-		return sizeTotalOptimized;
+		return sizeTotalOptimized.get();
+	}
+
+	public void setWorkerPool(WorkerPool workerPool) {
+		this.workerPool = workerPool;
+	}
+
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public void setPrecompressor(Precompressor precompressor) {
+		this.precompressor = precompressor;
+	}
+
+	public void setGzipIterations(int gzipIterations) {
+		this.gzipIterations = gzipIterations;
+	}
+
+	public void setTimingReport(TimingReport timingReport) {
+		this.timingReport = timingReport;
+	}
+
+	/**
+	 * Records a finished step if timing is enabled.
+	 *
+	 * @param startNanos {@link System#nanoTime()} when the step started
+	 */
+	protected void recordTiming(TimingReport.Phase phase, File file, long startNanos, long bytes) {
+		if (timingReport != null) {
+			timingReport.record(phase, file, startNanos, bytes);
+		}
 	}
 
 	protected File getFileWithSuffix(String path, String suffix) throws IOException {
@@ -90,33 +165,74 @@ public abstract class AbstractOptimizer {
 	}
 
 	protected File aggregateFiles(ResourcesSetAdapter rsa, Charset cset, boolean delimeters) throws IOException {
+		long start = System.nanoTime();
 		File outputFile = getOutputFile(rsa);
 
-		if (rsa.getAggregation().getPrependedFile() != null) {
-			// write / append to be prepended file into / to the output file
-			prependFile(rsa.getAggregation().getPrependedFile(), outputFile, cset, rsa);
-		}
-
-		for (File file : rsa.getFiles()) {
-			try (Reader in = getReader(rsa, file)) {
-				StringWriter writer = new StringWriter();
-				IOUtil.copy(in, writer);
+		// larger files are transferred directly if they are neither transcoded nor modified while reading
+		boolean rawCopy = cset.equals(Charset.forName(rsa.getEncoding())) && !isContentReplaced(rsa);
+
+		// the output file is opened only once for all files
+		try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				Writer writer = new BufferedWriter(
+						new OutputStreamWriter(Channels.newOutputStream(channel), cset), BUFFER_SIZE)) {
+			if (rsa.getAggregation().getPrependedFile() != null) {
+				// write / append to be prepended file into / to the output file
+				appendFile(rsa, rsa.getAggregation().getPrependedFile(), rawCopy, channel, writer);
+				writer.write(System.lineSeparator());
+			}
 
-				CharSink charSink = Files.asCharSink(outputFile, cset, FileWriteMode.APPEND);
-				charSink.write(System.lineSeparator());
-				if (delimeters && outputFile.length() > 0) {
+			for (File file : rsa.getFiles()) {
+				writer.write(System.lineSeparator());
+				if (delimeters) {
 					// append semicolon to the new file in order to avoid invalid JS code
-					charSink.write(";");
+					writer.write(";");
 				}
 
 				// write / append content into / to the new file
-				charSink.write(writer.toString());
+				appendFile(rsa, file, rawCopy, channel, writer);
 			}
 		}
 
+		recordTiming(TimingReport.Phase.AGGREGATION, rsa.getAggregation().getOutputFile(), start,
+				outputFile.length());
+
 		return outputFile;
 	}
 
+	/**
+	 * Appends the content of a file either by transferring its bytes directly into the channel or by copying the
+	 * chars of its reader into the writer, which writes into the same channel.
+	 */
+	private void appendFile(ResourcesSetAdapter rsa, File file, boolean rawCopy, FileChannel channel, Writer writer)
+			throws IOException {
+		if (!rawCopy || file.length() < TRANSFER_MIN_SIZE) {
+			try (Reader in = getReader(rsa, file)) {
+				IOUtil.copy(in, writer, BUFFER_SIZE);
+			}
+
+			return;
+		}
+
+		// preceding chars have to be written before the bytes are transferred
+		writer.flush();
+		try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				position += in.transferTo(position, size - position, channel);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if {@link #getReader(ResourcesSetAdapter, File)} modifies the content of files, e.g. replaces
+	 * tokens, so that files can not be aggregated by copying their bytes.
+	 */
+	protected boolean isContentReplaced(ResourcesSetAdapter rsa) {
+		return false;
+	}
+
 	protected void deleteFilesIfNecessary(ResourcesSetAdapter rsa) {
 		if (rsa.getAggregation().isRemoveIncluded() && !rsa.getFiles().isEmpty()) {
 			for (File file : rsa.getFiles()) {
@@ -188,19 +304,89 @@ public abstract class AbstractOptimizer {
 		if (".gz".equalsIgnoreCase(FileUtils.getExtension(file.getName()))) {
 			return null;
 		}
-		File gzipped = new File(file.getAbsolutePath() + ".gz");
-		try (FileInputStream ins = new FileInputStream(file);
-				FileOutputStream fos = new FileOutputStream(gzipped);
-				GZIPOutputStream out = new GZIPOutputStream(fos) {
-					{
-						def.setLevel(Deflater.BEST_COMPRESSION); // could be set manually via plugin config if needed
-					}
-				}) {
-			ins.transferTo(out);
+		OptimizerEvents.GzipWritten event = new OptimizerEvents.GzipWritten();
+		event.begin();
+		long start = System.nanoTime();
+		File gzipped = Precompressor.gzip(file, Deflater.BEST_COMPRESSION, gzipIterations);
+		recordTiming(TimingReport.Phase.GZIP, file, start, file.length());
+		if (event.shouldCommit()) {
+			event.file = file.getPath();
+			event.originalSize = file.length();
+			event.gzippedSize = gzipped.length();
+			event.commit();
 		}
+
 		return gzipped;
 	}
 
+	/**
+	 * Writes a gzipped variant of the given optimized file, asynchronously if a
+	 * precompressor is set.
+	 */
+	protected void precompress(File file) throws IOException {
+		if (precompressor != null) {
+			precompressor.submit(file);
+		} else {
+			gzipFile(file);
+		}
+	}
+
+	/**
+	 * Commits a begun event for a single optimized file if a recording wants it.
+	 */
+	protected void commitFileEvent(OptimizerEvents.FileOptimized event, File file, String type, long originalSize,
+			File outputFile, boolean cached) {
+		if (event.shouldCommit()) {
+			event.file = file.getPath();
+			event.type = type;
+			event.originalSize = originalSize;
+			event.optimizedSize = outputFile.length();
+			event.cached = cached;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits a begun event for the written output file of an aggregation if a
+	 * recording wants it.
+	 */
+	protected void commitAggregationEvent(OptimizerEvents.AggregationBuilt event, ResourcesSetAdapter rsa,
+			String type, long originalSize) {
+		if (event.shouldCommit()) {
+			File outputFile = rsa.getAggregation().getOutputFile();
+			event.outputFile = outputFile.getPath();
+			event.type = type;
+			event.files = rsa.getFiles().size();
+			event.originalSize = originalSize;
+			event.optimizedSize = outputFile.length();
+			event.compressed = !rsa.getAggregation().isWithoutCompress();
+			event.commit();
+		}
+	}
+
+	protected String getCachedContent(String cacheKey, Charset cset) throws IOException {
+		if (cacheKey == null) {
+			return null;
+		}
+
+		byte[] content = resultCache.get(cacheKey);
+		if (content == null) {
+			return null;
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Using cached result " + cacheKey);
+		}
+
+		return new String(content, cset);
+	}
+
+	protected void putCachedContent(String cacheKey, String content, Charset cset) throws IOException {
+		if (cacheKey != null) {
+			resultCache.put(cacheKey, content.getBytes(cset));
+		}
+	}
+
 	protected Reader getReader(ResourcesSetAdapter rsAdapter, File file)
 			throws FileNotFoundException, UnsupportedEncodingException {
 		return new InputStreamReader(new FileInputStream(file), rsAdapter.getEncoding());
@@ -208,15 +394,19 @@ public abstract class AbstractOptimizer {
 
 	protected long addToOriginalSize(File file) {
 		long length = file.length();
-		sizeTotalOriginal = sizeTotalOriginal + length;
+		sizeTotalOriginal.addAndGet(length);
 		return length;
 	}
 
+	protected void addToOriginalSize(long size) {
+		sizeTotalOriginal.addAndGet(size);
+	}
+
 	protected void addToOptimizedSize(File file) {
-		sizeTotalOptimized = sizeTotalOptimized + file.length();
+		sizeTotalOptimized.addAndGet(file.length());
 	}
 
 	protected void addToOptimizedSize(long size) {
-		sizeTotalOptimized = sizeTotalOptimized + size;
+		sizeTotalOptimized.addAndGet(size);
 	}
 }
\ No newline at end of file
@@ -21,30 +21,38 @@ package org.primefaces.extensions.optimizerplugin.optimizer;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
+import org.primefaces.extensions.optimizerplugin.util.BufferedLog;
+import org.primefaces.extensions.optimizerplugin.util.OptimizerEvents;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetAdapter;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetJsAdapter;
+import org.primefaces.extensions.optimizerplugin.util.TimingReport.Phase;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.CharStreams;
 import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
-import com.google.javascript.jscomp.CompilationLevel;
 import com.google.javascript.jscomp.Compiler;
 import com.google.javascript.jscomp.CompilerOptions;
-import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.JSChunk;
 import com.google.javascript.jscomp.JSError;
 import com.google.javascript.jscomp.Result;
 import com.google.javascript.jscomp.SourceFile;
 import com.google.javascript.jscomp.SourceMap;
-import com.google.javascript.jscomp.WarningLevel;
 
 /**
  * Class for Google Closure Compiler doing JavaScript optimization.
@@ -59,6 +67,10 @@ public class ClosureCompilerOptimizer extends AbstractOptimizer {
 
 	private static final String SOURCE_MAP_FILE_EXTENSION = ".map";
 
+	private static final String BASE_CHUNK_NAME = "base";
+
+	private static final String EVENT_TYPE = "JS";
+
 	public ClosureCompilerOptimizer(Log log) {
 		super(log);
 	}
@@ -66,183 +78,115 @@ public class ClosureCompilerOptimizer extends AbstractOptimizer {
 	@Override
 	public void optimize(final ResourcesSetAdapter rsAdapter) throws MojoExecutionException {
 		final ResourcesSetJsAdapter rsa = (ResourcesSetJsAdapter) rsAdapter;
-		final CompilationLevel compLevel = rsa.getCompilationLevel();
-		final CompilerOptions options = new CompilerOptions();
-		compLevel.setOptionsForCompilationLevel(options);
-
-		final WarningLevel warnLevel = rsa.getWarningLevel();
-		warnLevel.setOptionsForWarningLevel(options);
-
-		final LanguageMode langIn = rsa.getLanguageIn();
-		options.setLanguageIn(langIn);
-
-		final LanguageMode langOut = rsa.getLanguageOut();
-		options.setLanguageOut(langOut);
 		Compiler.setLoggingLevel(Level.WARNING);
 
-		options.setEmitUseStrict(rsa.isEmitUseStrict());
-		options.setEnvironment(CompilerOptions.Environment.BROWSER);
-
-		// polyfills
-		options.setRewritePolyfills(true);
-
-		options.setProcessCommonJSModules(rsa.isProcessCommonJSModules());
-
-		boolean isGzipRequested = rsa.isGzip();
-
 		try {
 			final Charset cset = Charset.forName(rsa.getEncoding());
 
 			if (rsa.getAggregation() == null) {
 				// no aggregation
-				for (final File file : rsa.getFiles()) {
-					log.info("Optimize JS file " + file.getName() + " ...");
-
-					// statistic
-					addToOriginalSize(file);
-
-					// path of the original file
-					final String path = file.getCanonicalPath();
-
-					String outputFilePath = null;
-					String outputSourceMapDir = null;
-					File sourceMapFile = null;
-					final File sourceFile;
-
-					if (rsa.getSourceMap() != null) {
-						// setup source map
-						outputFilePath = file.getCanonicalPath();
-						outputSourceMapDir = rsa.getSourceMap().getOutputDir();
-						sourceMapFile = setupSourceMapFile(options, rsa.getSourceMap(), outputFilePath);
-						// create an empty file with ...source.js from the original one
-						sourceFile = getFileWithSuffix(path, AbstractOptimizer.OUTPUT_FILE_SUFFIX);
-
-						if (StringUtils.isNotBlank(rsa.getSuffix())) {
-							// rename original file as ...source.js
-							FileUtils.rename(file, sourceFile);
-						} else {
-							// copy content of the original file to the ...source.js
-							FileUtils.copyFile(file, sourceFile);
-						}
-					} else {
-						sourceFile = file;
-					}
-
-					// compile
-					final List<SourceFile> interns = new ArrayList<>();
-					interns.add(SourceFile.fromPath(sourceFile.toPath(), cset));
-					final Compiler compiler = compile(interns, options, rsa.isFailOnWarning());
-
-					if (StringUtils.isNotBlank(rsa.getSuffix())) {
-						// write compiled content into the new file
-						final File outputFile = getFileWithSuffix(path, rsa.getSuffix());
-						Files.asCharSink(outputFile, cset).write(compiler.toSource());
-
-						if (sourceMapFile != null) {
-							// write sourceMappingURL into the minified file
-							writeSourceMappingURL(outputFile, sourceMapFile, rsa.getSourceMap().getSourceMapRoot(),
-									cset);
-						}
-
-						// statistic
-						addToOptimizedSize(outputFile);
-					} else {
-						// path of temp. file
-						final String pathOptimized = FileUtils.removeExtension(path) + OPTIMIZED_FILE_EXTENSION;
-
-						// create a new temp. file
-						final File outputFile = new File(pathOptimized);
-						Files.touch(outputFile);
-
-						// write compiled content into the new file and rename it (overwrite the
-						// original file)
-						Files.asCharSink(outputFile, cset).write(compiler.toSource());
-						FileUtils.rename(outputFile, file);
-
-						if (isGzipRequested) {
-							gzipFile(file);
-						}
-
-						if (sourceMapFile != null) {
-							// write sourceMappingURL into the minified file
-							writeSourceMappingURL(file, sourceMapFile, rsa.getSourceMap().getSourceMapRoot(), cset);
-						}
-
-						// statistic
-						addToOptimizedSize(file);
-					}
-
-					if (outputFilePath != null) {
-						// write the source map
-						Files.touch(sourceMapFile);
-						writeSourceMap(sourceMapFile, outputFilePath, compiler.getSourceMap(), outputSourceMapDir);
-
-						// move the source file to the source map dir
-						moveToSourceMapDir(sourceFile, outputSourceMapDir);
+				if (workerPool != null && workerPool.isParallel() && rsa.getFiles().size() > 1) {
+					optimizeFilesInParallel(rsa, cset);
+				} else {
+					for (final File file : rsa.getFiles()) {
+						optimizeFile(rsa, file, createOptions(rsa), cset);
 					}
 				}
 			} else if (rsa.getAggregation().getOutputFile() != null) {
 				// aggregation to one output file
 				final File outputFile = rsa.getAggregation().getOutputFile();
-				final File aggrOutputFile = aggregateFiles(rsa, cset, true);
 
-				// statistic
-				final long sizeBefore = addToOriginalSize(aggrOutputFile);
+				final OptimizerEvents.AggregationBuilt event = new OptimizerEvents.AggregationBuilt();
+				event.begin();
 
 				if (!rsa.getAggregation().isWithoutCompress()) {
-					// compressing
+					// compressing, every file is passed to the compiler as its own input
+					final List<File> inputFiles = getAggregatedFiles(rsa);
+
+					// statistic
+					long sizeBefore = 0;
+					for (final File file : inputFiles) {
+						sizeBefore += file.length();
+					}
+
+					addToOriginalSize(sizeBefore);
+
 					for (final File file : rsa.getFiles()) {
 						log.info("Optimize JS file " + file.getName() + " ...");
 					}
 
+					final CompilerOptions options = createOptions(rsa);
 					String outputFilePath = null;
 					File sourceMapFile = null;
 					if (rsa.getSourceMap() != null) {
 						// setup source map
 						outputFilePath = outputFile.getCanonicalPath();
 						sourceMapFile = setupSourceMapFile(options, rsa.getSourceMap(), outputFilePath);
+
+						// the source map refers to the original files, which may be removed after the
+						// aggregation
+						options.setSourceMapIncludeSourcesContent(true);
 					}
 
-					// compile
-					final List<SourceFile> interns = new ArrayList<>();
-					interns.add(SourceFile.fromPath(aggrOutputFile.toPath(), cset));
-					final Compiler compiler = compile(interns, options, rsa.isFailOnWarning());
+					final String cacheKey = resultCache != null && outputFilePath == null
+							? resultCache.computeKey(getCacheOptions(rsa) + ":inputs", inputFiles)
+							: null;
+					String compiledSource = getCachedContent(cacheKey, cset);
+					Compiler compiler = null;
+
+					if (compiledSource == null) {
+						// compile
+						final long start = System.nanoTime();
+						compiler = compile(getSourceFiles(rsa, inputFiles), options, rsa.isFailOnWarning());
+						compiledSource = compiler.toSource();
+						recordTiming(Phase.JS_COMPILATION, outputFile, start, sizeBefore);
+						putCachedContent(cacheKey, compiledSource, cset);
+					}
 
 					// delete single files if necessary
 					deleteFilesIfNecessary(rsa);
 					deleteDirectoryIfNecessary(rsa);
 
 					// write the compiled content into a new file
-					Files.touch(outputFile);
-					Files.asCharSink(outputFile, cset).write(compiler.toSource());
+					Files.createParentDirs(outputFile);
+					Files.asCharSink(outputFile, cset).write(compiledSource);
 
 					if (outputFilePath != null) {
 						// write sourceMappingURL into the minified file
+						final long start = System.nanoTime();
 						writeSourceMappingURL(outputFile, sourceMapFile, rsa.getSourceMap().getSourceMapRoot(), cset);
 
 						// write the source map
-						final String outputSourceMapDir = rsa.getSourceMap().getOutputDir();
 						Files.touch(sourceMapFile);
-						writeSourceMap(sourceMapFile, outputFilePath, compiler.getSourceMap(), outputSourceMapDir);
-
-						// move the source file
-						moveToSourceMapDir(aggrOutputFile, outputSourceMapDir);
-					} else {
-						// delete the temp. aggregated file ...source.js
-						if (aggrOutputFile.exists() && !aggrOutputFile.delete()) {
-							log.warn("Temporary file " + aggrOutputFile.getName() + " could not be deleted.");
-						}
+						writeSourceMap(sourceMapFile, outputFilePath, compiler.getSourceMap(),
+								rsa.getSourceMap().getOutputDir());
+						recordTiming(Phase.SOURCE_MAP, outputFile, start, sizeBefore);
+					}
+
+					if (rsa.isGzip()) {
+						precompress(outputFile);
 					}
 
 					// statistic
-					addToOptimizedSize(sizeBefore - outputFile.length());
+					addToOptimizedSize(outputFile);
+					commitAggregationEvent(event, rsa, EVENT_TYPE, sizeBefore);
 				} else {
+					final File aggrOutputFile = aggregateFiles(rsa, cset, true);
+
+					// statistic
+					final long sizeBefore = addToOriginalSize(aggrOutputFile);
+
 					// delete single files if necessary
 					deleteFilesIfNecessary(rsa);
 					deleteDirectoryIfNecessary(rsa);
 
 					// rename aggregated file if necessary
 					renameOutputFileIfNecessary(rsa, aggrOutputFile);
+					commitAggregationEvent(event, rsa, EVENT_TYPE, sizeBefore);
+
+					if (rsa.isGzip()) {
+						precompress(outputFile);
+					}
 
 					// statistic
 					addToOptimizedSize(sizeBefore);
@@ -256,6 +200,382 @@ public class ClosureCompilerOptimizer extends AbstractOptimizer {
 		}
 	}
 
+	/**
+	 * @return the prepended file, if any, followed by the files of the aggregation.
+	 *         A prepended file matched by the includes too is only returned once,
+	 *         the compiler rejects duplicate inputs.
+	 */
+	private List<File> getAggregatedFiles(final ResourcesSetJsAdapter rsa) throws IOException {
+		final List<File> files = new ArrayList<>(rsa.getFiles().size() + 1);
+		final Set<File> canonicalFiles = new HashSet<>();
+		if (rsa.getAggregation().getPrependedFile() != null) {
+			files.add(rsa.getAggregation().getPrependedFile());
+			canonicalFiles.add(rsa.getAggregation().getPrependedFile().getCanonicalFile());
+		}
+
+		for (final File file : rsa.getFiles()) {
+			if (canonicalFiles.add(file.getCanonicalFile())) {
+				files.add(file);
+			}
+		}
+
+		return files;
+	}
+
+	/**
+	 * Reads the given files into separate compiler inputs. Separate inputs are parsed as separate scripts, which is
+	 * what the ';' delimiters between aggregated files ensure, and give source maps the positions in the original
+	 * files. The inputs are named by their canonical paths, so that the source map location mappings apply.
+	 */
+	private List<SourceFile> getSourceFiles(final ResourcesSetJsAdapter rsa, final List<File> files)
+			throws IOException {
+		final List<SourceFile> sourceFiles = new ArrayList<>(files.size());
+		for (final File file : files) {
+			try (Reader in = getReader(rsa, file)) {
+				sourceFiles.add(SourceFile.fromCode(file.getCanonicalPath(), CharStreams.toString(in)));
+			}
+		}
+
+		return sourceFiles;
+	}
+
+	/**
+	 * Compiles the aggregations of a resources set in one compiler pass. Every
+	 * aggregation is a chunk depending on a chunk with its prepended file, so that
+	 * a prepended file shared by several aggregations is parsed and compiled only
+	 * once. The output file of an aggregation contains its chunk and all chunks it
+	 * depends on. All aggregations must have the same compiler settings, an output
+	 * file and no source map.
+	 *
+	 * @param rsas aggregations in configuration order
+	 * @throws MojoExecutionException
+	 */
+	public void optimizeChunks(final List<ResourcesSetJsAdapter> rsas) throws MojoExecutionException {
+		final ResourcesSetJsAdapter first = rsas.get(0);
+		final CompilerOptions options = createOptions(first);
+		Compiler.setLoggingLevel(Level.WARNING);
+
+		try {
+			final Charset cset = Charset.forName(first.getEncoding());
+
+			if (!hasDistinctChunkInputs(rsas)) {
+				// an input can only be part of one chunk
+				log.info("Aggregations share files, compiling them one by one ...");
+				for (final ResourcesSetJsAdapter rsa : rsas) {
+					optimize(rsa);
+				}
+
+				return;
+			}
+
+			// the base chunk is the root of the chunk graph and receives injected code like polyfills
+			final JSChunk baseChunk = new JSChunk(BASE_CHUNK_NAME);
+			baseChunk.add(SourceFile.fromCode(BASE_CHUNK_NAME, ""));
+
+			final List<JSChunk> chunks = new ArrayList<>();
+			chunks.add(baseChunk);
+
+			final Map<File, JSChunk> prependedChunks = new HashMap<>();
+			final List<List<JSChunk>> outputChunks = new ArrayList<>(rsas.size());
+			long sizeBefore = 0;
+			for (final ResourcesSetJsAdapter rsa : rsas) {
+				final List<JSChunk> dependencies = new ArrayList<>(3);
+				dependencies.add(baseChunk);
+
+				final File prependedFile = rsa.getAggregation().getPrependedFile();
+				if (prependedFile != null) {
+					JSChunk prependedChunk = prependedChunks.get(prependedFile.getCanonicalFile());
+					if (prependedChunk == null) {
+						prependedChunk = new JSChunk("prepended" + prependedChunks.size());
+						prependedChunk.addDependency(baseChunk);
+						prependedChunk.add(getSourceFiles(rsa, List.of(prependedFile)).get(0));
+						prependedChunks.put(prependedFile.getCanonicalFile(), prependedChunk);
+						chunks.add(prependedChunk);
+						sizeBefore += prependedFile.length();
+					}
+
+					dependencies.add(prependedChunk);
+				}
+
+				final JSChunk chunk = new JSChunk("aggregation" + outputChunks.size());
+				chunk.addDependency(dependencies.get(dependencies.size() - 1));
+				for (final File file : rsa.getFiles()) {
+					log.info("Optimize JS file " + file.getName() + " ...");
+					sizeBefore += file.length();
+				}
+
+				for (final SourceFile sourceFile : getSourceFiles(rsa, new ArrayList<>(rsa.getFiles()))) {
+					chunk.add(sourceFile);
+				}
+
+				chunks.add(chunk);
+				dependencies.add(chunk);
+				outputChunks.add(dependencies);
+			}
+
+			addToOriginalSize(sizeBefore);
+
+			// compile, the compilation of all chunks is recorded for the first aggregation
+			OptimizerEvents.AggregationBuilt event = new OptimizerEvents.AggregationBuilt();
+			event.begin();
+			final long start = System.nanoTime();
+			final Compiler compiler = new Compiler();
+			final Result result = compiler.compileChunks(EXTERNS_EMPTY, chunks, options);
+			evalResult(result, first.isFailOnWarning());
+			recordTiming(Phase.JS_COMPILATION, first.getAggregation().getOutputFile(), start, sizeBefore);
+
+			for (int i = 0; i < rsas.size(); i++) {
+				final ResourcesSetJsAdapter rsa = rsas.get(i);
+				if (i > 0) {
+					event = new OptimizerEvents.AggregationBuilt();
+					event.begin();
+				}
+
+				final StringBuilder compiledSource = new StringBuilder();
+				for (final JSChunk chunk : outputChunks.get(i)) {
+					final String chunkSource = compiler.toSource(chunk);
+					if (!chunkSource.isEmpty()) {
+						if (compiledSource.length() > 0) {
+							compiledSource.append('\n');
+						}
+
+						compiledSource.append(chunkSource);
+					}
+				}
+
+				// the original size is taken before the files may be deleted
+				long originalSize = 0;
+				for (final File file : getAggregatedFiles(rsa)) {
+					originalSize += file.length();
+				}
+
+				// delete single files if necessary
+				deleteFilesIfNecessary(rsa);
+				deleteDirectoryIfNecessary(rsa);
+
+				// write the compiled content into a new file
+				final File outputFile = rsa.getAggregation().getOutputFile();
+				Files.createParentDirs(outputFile);
+				Files.asCharSink(outputFile, cset).write(compiledSource);
+				commitAggregationEvent(event, rsa, EVENT_TYPE, originalSize);
+
+				if (rsa.isGzip()) {
+					precompress(outputFile);
+				}
+
+				// statistic
+				addToOptimizedSize(outputFile);
+			}
+		} catch (final MojoExecutionException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new MojoExecutionException("Resources optimization failure: " + e.getLocalizedMessage(), e);
+		}
+	}
+
+	/**
+	 * @return true if no aggregated file is part of another aggregation or a prepended file
+	 */
+	private boolean hasDistinctChunkInputs(final List<ResourcesSetJsAdapter> rsas) throws IOException {
+		final Set<File> prependedFiles = new HashSet<>();
+		for (final ResourcesSetJsAdapter rsa : rsas) {
+			if (rsa.getAggregation().getPrependedFile() != null) {
+				prependedFiles.add(rsa.getAggregation().getPrependedFile().getCanonicalFile());
+			}
+		}
+
+		final Set<File> files = new HashSet<>();
+		for (final ResourcesSetJsAdapter rsa : rsas) {
+			for (final File file : rsa.getFiles()) {
+				final File canonicalFile = file.getCanonicalFile();
+				if (prependedFiles.contains(canonicalFile) || !files.add(canonicalFile)) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * All options influencing the compiled output, used for cache keys.
+	 */
+	protected String getCacheOptions(final ResourcesSetJsAdapter rsa) {
+		return "closure:" + rsa.getCompilationLevel() + ':' + rsa.getWarningLevel() + ':' + rsa.getLanguageIn()
+				+ ':' + rsa.getLanguageOut() + ':' + rsa.isEmitUseStrict() + ':' + rsa.isProcessCommonJSModules()
+				+ ':' + rsa.getEncoding();
+	}
+
+	/**
+	 * Creates new compiler options with the settings of the given resources set.
+	 * Every compilation owns its options, so that per-compilation settings like
+	 * the source map output path never leak into other compilations.
+	 */
+	protected CompilerOptions createOptions(final ResourcesSetJsAdapter rsa) {
+		final CompilerOptions options = new CompilerOptions();
+		rsa.getCompilationLevel().setOptionsForCompilationLevel(options);
+		rsa.getWarningLevel().setOptionsForWarningLevel(options);
+
+		options.setLanguageIn(rsa.getLanguageIn());
+		options.setLanguageOut(rsa.getLanguageOut());
+
+		options.setEmitUseStrict(rsa.isEmitUseStrict());
+		options.setEnvironment(CompilerOptions.Environment.BROWSER);
+
+		// polyfills
+		options.setRewritePolyfills(true);
+
+		options.setProcessCommonJSModules(rsa.isProcessCommonJSModules());
+
+		return options;
+	}
+
+	/**
+	 * Compiles every file on its own worker with its own compiler, options and log.
+	 * Logs and statistics are merged in the order of the files.
+	 */
+	private void optimizeFilesInParallel(final ResourcesSetJsAdapter rsa, final Charset cset)
+			throws MojoExecutionException {
+		final List<BufferedLog> fileLogs = new ArrayList<>(rsa.getFiles().size());
+		final List<Callable<ClosureCompilerOptimizer>> tasks = new ArrayList<>(rsa.getFiles().size());
+		for (final File file : rsa.getFiles()) {
+			final BufferedLog fileLog = new BufferedLog(log);
+			fileLogs.add(fileLog);
+			tasks.add(() -> {
+				final ClosureCompilerOptimizer fileOptimizer = new ClosureCompilerOptimizer(fileLog);
+				fileOptimizer.setResultCache(resultCache);
+				fileOptimizer.setPrecompressor(precompressor);
+				fileOptimizer.setTimingReport(timingReport);
+				fileOptimizer.optimizeFile(rsa, file, fileOptimizer.createOptions(rsa), cset);
+				return fileOptimizer;
+			});
+		}
+
+		try {
+			for (final ClosureCompilerOptimizer fileOptimizer : workerPool.invokeAll(tasks)) {
+				addToOriginalSize(fileOptimizer.getTotalOriginalSize());
+				addToOptimizedSize(fileOptimizer.getTotalOptimizedSize());
+			}
+		} finally {
+			for (final BufferedLog fileLog : fileLogs) {
+				fileLog.flushTo(log);
+			}
+		}
+	}
+
+	private void optimizeFile(final ResourcesSetJsAdapter rsa, final File file, final CompilerOptions options,
+			final Charset cset) throws IOException, MojoExecutionException {
+		log.info("Optimize JS file " + file.getName() + " ...");
+		final OptimizerEvents.FileOptimized event = new OptimizerEvents.FileOptimized();
+		event.begin();
+
+		// statistic
+		final long size = addToOriginalSize(file);
+
+		// path of the original file
+		final String path = file.getCanonicalPath();
+
+		String outputFilePath = null;
+		String outputSourceMapDir = null;
+		File sourceMapFile = null;
+		final File sourceFile;
+
+		if (rsa.getSourceMap() != null) {
+			// setup source map
+			outputFilePath = file.getCanonicalPath();
+			outputSourceMapDir = rsa.getSourceMap().getOutputDir();
+			sourceMapFile = setupSourceMapFile(options, rsa.getSourceMap(), outputFilePath);
+			// create an empty file with ...source.js from the original one
+			sourceFile = getFileWithSuffix(path, AbstractOptimizer.OUTPUT_FILE_SUFFIX);
+
+			if (StringUtils.isNotBlank(rsa.getSuffix())) {
+				// rename original file as ...source.js
+				FileUtils.rename(file, sourceFile);
+			} else {
+				// copy content of the original file to the ...source.js
+				FileUtils.copyFile(file, sourceFile);
+			}
+		} else {
+			sourceFile = file;
+		}
+
+		// source maps refer to file paths and can't be taken from the cache
+		final String cacheKey = resultCache != null && outputFilePath == null
+				? resultCache.computeKey(getCacheOptions(rsa), List.of(sourceFile))
+				: null;
+		String compiledSource = getCachedContent(cacheKey, cset);
+		Compiler compiler = null;
+
+		if (compiledSource == null) {
+			// compile
+			final long start = System.nanoTime();
+			final List<SourceFile> interns = new ArrayList<>();
+			interns.add(SourceFile.fromPath(sourceFile.toPath(), cset));
+			compiler = compile(interns, options, rsa.isFailOnWarning());
+			compiledSource = compiler.toSource();
+			recordTiming(Phase.JS_COMPILATION, file, start, size);
+			putCachedContent(cacheKey, compiledSource, cset);
+		}
+
+		final File optimizedFile;
+		if (StringUtils.isNotBlank(rsa.getSuffix())) {
+			// write compiled content into the new file
+			final File outputFile = getFileWithSuffix(path, rsa.getSuffix());
+			optimizedFile = outputFile;
+			Files.asCharSink(outputFile, cset).write(compiledSource);
+
+			if (sourceMapFile != null) {
+				// write sourceMappingURL into the minified file
+				writeSourceMappingURL(outputFile, sourceMapFile, rsa.getSourceMap().getSourceMapRoot(), cset);
+			}
+
+			if (rsa.isGzip()) {
+				precompress(outputFile);
+			}
+
+			// statistic
+			addToOptimizedSize(outputFile);
+		} else {
+			// path of temp. file
+			final String pathOptimized = FileUtils.removeExtension(path) + OPTIMIZED_FILE_EXTENSION;
+
+			// create a new temp. file
+			final File outputFile = new File(pathOptimized);
+			Files.touch(outputFile);
+			optimizedFile = file;
+
+			// write compiled content into the new file and rename it (overwrite the
+			// original file)
+			Files.asCharSink(outputFile, cset).write(compiledSource);
+			FileUtils.rename(outputFile, file);
+
+			if (sourceMapFile != null) {
+				// write sourceMappingURL into the minified file
+				writeSourceMappingURL(file, sourceMapFile, rsa.getSourceMap().getSourceMapRoot(), cset);
+			}
+
+			if (rsa.isGzip()) {
+				precompress(file);
+			}
+
+			// statistic
+			addToOptimizedSize(file);
+		}
+
+		if (outputFilePath != null) {
+			// write the source map
+			final long start = System.nanoTime();
+			Files.touch(sourceMapFile);
+			writeSourceMap(sourceMapFile, outputFilePath, compiler.getSourceMap(), outputSourceMapDir);
+
+			// move the source file to the source map dir
+			moveToSourceMapDir(sourceFile, outputSourceMapDir);
+			recordTiming(Phase.SOURCE_MAP, file, start, size);
+		}
+
+		commitFileEvent(event, file, EVENT_TYPE, size, optimizedFile, compiler == null);
+	}
+
 	protected Compiler compile(final List<SourceFile> interns, final CompilerOptions options,
 			final boolean failOnWarning) throws MojoExecutionException {
 		// compile
@@ -15,6 +15,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,13 +27,120 @@ import java.util.regex.Pattern;
  */
 public class CssCompressor {
 
-	private final StringBuilder srcsb = new StringBuilder();
+	/**
+	 * Engines replacing comments, strings and other tokens by placeholders before
+	 * the minification.
+	 */
+	public enum Engine {
+		/**
+		 * One regular expression pass per kind of token.
+		 */
+		REGEX,
+
+		/**
+		 * Single-pass lexer, see {@link CssTokenizer}.
+		 */
+		TOKENIZER
+	}
+
+	private static final String PLACEHOLDER_NAME = "YUICSSMIN";
+
+	private static final String PRESERVED_TOKEN = "___YUICSSMIN_PRESERVED_TOKEN_";
+
+	private static final String CANDIDATE_COMMENT = "___YUICSSMIN_PRESERVE_CANDIDATE_COMMENT_";
+
+	// all patterns are compiled once, the compressor runs for each CSS file
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern SVG_DATA_URL = Pattern.compile("(?i)url\\(\\s*([\"']?)data\\:\\s*image/svg\\+xml");
+	private static final Pattern DATA_URL = Pattern.compile("(?i)url\\(\\s*([\"']?)data\\:\\s*(?!(image/svg\\+xml))");
+	private static final Pattern CALC = Pattern.compile("(?i)calc\\(\\s*([\"']?)");
+	private static final Pattern PROGID_MATRIX = Pattern.compile("(?i)progid:DXImageTransform.Microsoft.Matrix\\s*([\"']?)");
+	private static final Pattern STRING = Pattern.compile("\"([^\"\r\n\f\\\\]|\\\\[^0-9a-fA-F]|\\\\[0-9a-fA-F]{1,6}(?>\r\n|[ \t\r\n\f])?)*+\"|'([^'\r\n\f\\\\]|\\\\[^0-9a-fA-F]|\\\\[0-9a-fA-F]{1,6}(?>\r\n|[ \t\r\n\f])?)*+'");
+	private static final Pattern ALPHA_OPACITY = Pattern.compile("(?i)progid:DXImageTransform.Microsoft.Alpha\\(Opacity=");
+	private static final Pattern PSEUDO_CLASS = Pattern.compile("(^|})((^|([^{:])+):)+([^{]*\\{)");
+	private static final Pattern FIRST_LINE_LETTER = Pattern.compile("(?i):first-(line|letter)([{,])");
+	private static final Pattern CHARSET = Pattern.compile("(?i)^(.*)(@charset)( \"[^\"]*\";)");
+	private static final Pattern CHARSET_DUPLICATES = Pattern.compile("(?i)^((\\s*)(@charset)( [^;]+;\\s*))+");
+	private static final Pattern DIRECTIVES = Pattern.compile("(?i)@(font-face|import|(?:-(?:atsc|khtml|moz|ms|o|wap|webkit)-)?keyframe|media|page|namespace)");
+	private static final Pattern PSEUDO_ELEMENTS = Pattern.compile("(?i):(active|after|before|checked|disabled|empty|enabled|first-(?:child|of-type)|focus|hover|last-(?:child|of-type)|link|only-(?:child|of-type)|root|:selection|target|visited)");
+	private static final Pattern PSEUDO_FUNCTIONS = Pattern.compile("(?i):(lang|not|nth-child|nth-last-child|nth-last-of-type|nth-of-type|(?:-(?:moz|webkit)-)?any)\\(");
+	private static final Pattern VALUE_FUNCTIONS = Pattern.compile("(?i)([:,( ]\\s*)(attr|color-stop|from|rgba|to|url|(?:-(?:atsc|khtml|moz|ms|o|wap|webkit)-)?(?:calc|max|min|(?:repeating-)?(?:linear|radial)-gradient)|-webkit-gradient)");
+	private static final Pattern ZERO_UNITS = Pattern.compile("(?i)(^|: ?)((?:[0-9a-z-.]+ )*?)?(?:0?\\.)?0(?:px|em|in|cm|mm|pc|pt|ex|deg|g?rad|k?hz)");
+	private static final Pattern ZERO_PERCENT = Pattern.compile("(?i)(: ?)((?:[0-9a-z-.]+ )*?)?(?:0?\\.)?0%");
+	private static final Pattern KEYFRAME_100 = Pattern.compile("(?i)(^|,|\\{) ?100% ?\\{");
+	private static final Pattern ZERO_UNITS_IN_PARENS = Pattern.compile("(?i)(?<!hsla?|rgba?|linear-gradient?)\\( ?((?:[#0-9a-z-.]+[ ,])*)?(?:0?\\.)?0(?:px|em|%|in|cm|mm|pc|pt|ex|deg|g?rad|m?s|k?hz)");
+	private static final Pattern POSITION_ZERO = Pattern.compile("(?i)(background-position|webkit-mask-position|transform-origin|webkit-transform-origin|moz-transform-origin|o-transform-origin|ms-transform-origin|box-shadow|text-shadow):0([;}])");
+	private static final Pattern RGB = Pattern.compile("rgb\\s*\\(\\s*([0-9,\\s]+)\\s*\\)");
+	private static final Pattern HEX_COLOR = Pattern.compile("(=\\s*?[\"']?)?"
+			+ "#([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])"
+			+ "(:?}|[^0-9a-fA-F{][^{]*?})");
+	private static final Pattern BORDER_NONE = Pattern.compile("(?i)(border|border-top|border-right|border-bottom|border-left|outline|background):none([;}])");
+	private static final Pattern VAR = Pattern.compile("var\\(--[^;})]*\\)");
+	private static final Pattern SPACE_BEFORE = Pattern.compile("\\s+([!{};:>+()\\],])");
+	private static final Pattern AND_PAREN = Pattern.compile("(?i)\\band\\(");
+	private static final Pattern OR_PAREN = Pattern.compile("(?i)\\bor\\(");
+	private static final Pattern SPACE_AFTER = Pattern.compile("([!{}:;>+(\\[,])\\s+");
+	private static final Pattern SEMICOLON_BEFORE_BRACE = Pattern.compile(";+}");
+	private static final Pattern UNIT_AFTER_DOT_ZERO = Pattern.compile("([0-9])\\.0(px|em|%|in|cm|mm|pc|pt|ex|deg|m?s|g?rad|k?hz| |;)");
+	private static final Pattern FOUR_ZEROS = Pattern.compile(":0 0 0 0([;}])");
+	private static final Pattern THREE_ZEROS = Pattern.compile(":0 0 0([;}])");
+	private static final Pattern TWO_ZEROS = Pattern.compile("(?<!flex):0 0([;}])");
+	private static final Pattern LEADING_ZEROS = Pattern.compile("(:|\\s)0+\\.(\\d+)");
+	private static final Pattern QUERY_FRACTION = Pattern.compile("\\(([\\-A-Za-z]+):([0-9]+)/([0-9]+)\\)");
+	// starts at the beginning of a selector only, a match from within a selector would end at the same "{}"
+	private static final Pattern EMPTY_RULE = Pattern.compile("(?<![^}{/;])[^}{/;]++\\{}");
+	private static final Pattern MULTIPLE_SEMICOLONS = Pattern.compile(";;+");
+	private static final Pattern COLOR_RED = Pattern.compile("(:|\\s)(#f00)([;}])");
+	private static final Pattern COLOR_NAVY = Pattern.compile("(:|\\s)(#000080)([;}])");
+	private static final Pattern COLOR_GRAY = Pattern.compile("(:|\\s)(#808080)([;}])");
+	private static final Pattern COLOR_OLIVE = Pattern.compile("(:|\\s)(#808000)([;}])");
+	private static final Pattern COLOR_PURPLE = Pattern.compile("(:|\\s)(#800080)([;}])");
+	private static final Pattern COLOR_SILVER = Pattern.compile("(:|\\s)(#c0c0c0)([;}])");
+	private static final Pattern COLOR_TEAL = Pattern.compile("(:|\\s)(#008080)([;}])");
+	private static final Pattern COLOR_ORANGE = Pattern.compile("(:|\\s)(#ffa500)([;}])");
+	private static final Pattern COLOR_MAROON = Pattern.compile("(:|\\s)(#800000)([;}])");
+	private static final Pattern SPACE_AFTER_PAREN = Pattern.compile("\\)(?=[a-zA-Z0-9])");
+	private static final Pattern SPACE_BEFORE_CALC = Pattern.compile("(?<=[a-zA-Z0-9])(?=calc)");
+	private static final Pattern PARENS = Pattern.compile("(?<!url)\\(([^)]*?)\\)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern PLUS = Pattern.compile("\\s*\\+\\s*");
+	private static final Pattern CALC_DOUBLE_MINUS = Pattern.compile("(?<=[-|%)pxemrvhw\\d])--");
+	private static final Pattern CALC_PLUS = Pattern.compile("(?<=[-|%)pxemrvhw\\d])\\+");
+	private static final Pattern CALC_MINUS = Pattern.compile("(?<=[-|%)pxemrvhw\\d])-");
+	private static final Pattern CALC_MULTIPLY = Pattern.compile("(?<=[-|%)pxemrvhw\\d])\\*");
+	private static final Pattern CALC_DIVIDE = Pattern.compile("(?<=[-|%)pxemrvhw\\d])/");
+	private static final Pattern CALC_VAR = Pattern.compile("(var\\(-\\s-\\s)");
+	private static final Pattern CALC_PAREN_VAR = Pattern.compile("\\)(var\\(--)");
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final StringBuilder srcsb;
+
+	private final Engine engine;
 
 	public CssCompressor(Reader in) throws IOException {
+		this(in, Engine.REGEX);
+	}
+
+	public CssCompressor(Reader in, Engine engine) throws IOException {
+		this(in, engine, BUFFER_SIZE);
+	}
+
+	/**
+	 * @param in             - reader of the CSS
+	 * @param engine         - engine preserving the tokens
+	 * @param expectedLength - expected number of chars, e.g. the file length, to
+	 *                       size the buffer
+	 * @throws IOException if the CSS could not be read
+	 */
+	public CssCompressor(Reader in, Engine engine, int expectedLength) throws IOException {
+		this.engine = engine;
+		this.srcsb = new StringBuilder(Math.max(expectedLength, 16));
+
 		// Read the stream...
-		int c;
-		while ((c = in.read()) != -1) {
-			srcsb.append((char) c);
+		char[] buffer = new char[BUFFER_SIZE];
+		int n;
+		while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+			srcsb.append(buffer, 0, n);
 		}
 	}
 
@@ -46,13 +154,25 @@ public class CssCompressor {
 	 */
 	protected String preserveToken(String css, String preservedToken, String tokenRegex, boolean removeWhiteSpace,
 			ArrayList<String> preservedTokens) {
+		return preserveToken(css, preservedToken, Pattern.compile(tokenRegex), removeWhiteSpace, preservedTokens);
+	}
+
+	/**
+	 * @param css              - full CSS string
+	 * @param preservedToken   - token to preserve
+	 * @param p                - precompiled pattern to find token
+	 * @param removeWhiteSpace - remove any white space in the token
+	 * @param preservedTokens  - array of token values
+	 * @return the calculated string
+	 */
+	protected String preserveToken(String css, String preservedToken, Pattern p, boolean removeWhiteSpace,
+			ArrayList<String> preservedTokens) {
 
 		int maxIndex = css.length() - 1;
 		int appendIndex = 0;
 
 		StringBuilder sb = new StringBuilder();
 
-		Pattern p = Pattern.compile(tokenRegex);
 		Matcher m = p.matcher(css);
 
 		while (m.find()) {
@@ -90,7 +210,7 @@ public class CssCompressor {
 			if (foundTerminator) {
 				String token = css.substring(startIndex, endIndex);
 				if (removeWhiteSpace) {
-					token = token.replaceAll("\\s+", "");
+					token = WHITESPACE.matcher(token).replaceAll("");
 				}
 				preservedTokens.add(token);
 
@@ -111,22 +231,31 @@ public class CssCompressor {
 		return sb.toString();
 	}
 
-	public void compress(Writer out, int linebreakpos) throws IOException {
+	/**
+	 * Replaces comments, strings and other tokens which must not be minified by
+	 * placeholders.
+	 *
+	 * @param css             - full CSS string
+	 * @param preservedTokens - array of token values
+	 * @return the CSS string with placeholders
+	 */
+	protected String preserveTokens(String css, ArrayList<String> preservedTokens) {
 
-		Pattern p;
 		Matcher m;
-		String css = srcsb.toString();
 
 		int startIndex = 0;
 		int endIndex;
 		int i ;
 		int max;
-		ArrayList<String> preservedTokens = new ArrayList<>(0);
 		ArrayList<String> comments = new ArrayList<>(0);
 		String token;
 		int totallen = css.length();
 		String placeholder;
 
+		// text looking like a placeholder may overlap with real placeholders, then
+		// every placeholder is replaced separately
+		boolean placeholdersInSource = css.contains(PLACEHOLDER_NAME);
+
 		StringBuilder sb = new StringBuilder(css);
 
 		// collect all comment blocks...
@@ -144,16 +273,15 @@ public class CssCompressor {
 		}
 		css = sb.toString();
 
-		css = preserveToken(css, "url", "(?i)url\\(\\s*([\"']?)data\\:\\s*image/svg\\+xml", false, preservedTokens);
-		css = preserveToken(css, "url", "(?i)url\\(\\s*([\"']?)data\\:\\s*(?!(image/svg\\+xml))", true, preservedTokens);
-		css = preserveToken(css, "calc", "(?i)calc\\(\\s*([\"']?)", false, preservedTokens);
+		css = preserveToken(css, "url", SVG_DATA_URL, false, preservedTokens);
+		css = preserveToken(css, "url", DATA_URL, true, preservedTokens);
+		css = preserveToken(css, "calc", CALC, false, preservedTokens);
 		css = preserveToken(css, "progid:DXImageTransform.Microsoft.Matrix",
-				"(?i)progid:DXImageTransform.Microsoft.Matrix\\s*([\"']?)", false, preservedTokens);
+				PROGID_MATRIX, false, preservedTokens);
 
 		// preserve strings so their content doesn't get accidentally minified
 		sb = new StringBuilder();
-		p = Pattern.compile("\"([^\"\r\n\f\\\\]|\\\\[^0-9a-fA-F]|\\\\[0-9a-fA-F]{1,6}(?>\r\n|[ \t\r\n\f])?)*+\"|'([^'\r\n\f\\\\]|\\\\[^0-9a-fA-F]|\\\\[0-9a-fA-F]{1,6}(?>\r\n|[ \t\r\n\f])?)*+'");
-		m = p.matcher(css);
+		m = STRING.matcher(css);
 		while (m.find()) {
 			token = m.group();
 			char quote = token.charAt(0);
@@ -161,15 +289,17 @@ public class CssCompressor {
 
 			// maybe the string contains a comment-like substring?
 			// one, maybe more? put'em back then
-			if (token.contains("___YUICSSMIN_PRESERVE_CANDIDATE_COMMENT_")) {
+			if (placeholdersInSource) {
 				for (i = 0, max = comments.size(); i < max; i += 1) {
 					token = token.replace("___YUICSSMIN_PRESERVE_CANDIDATE_COMMENT_" + i + "___",
 								comments.get(i));
 				}
+			} else {
+				token = restorePlaceholders(token, CANDIDATE_COMMENT, comments);
 			}
 
 			// minify alpha opacity in filter strings
-			token = token.replaceAll("(?i)progid:DXImageTransform.Microsoft.Alpha\\(Opacity=", "alpha(opacity=");
+			token = ALPHA_OPACITY.matcher(token).replaceAll("alpha(opacity=");
 
 			preservedTokens.add(token);
 			String preserver = quote + "___YUICSSMIN_PRESERVED_TOKEN_" + (preservedTokens.size() - 1) + "___" + quote;
@@ -179,6 +309,15 @@ public class CssCompressor {
 		css = sb.toString();
 
 		// strings are safe, now wrestle the comments
+		if (!placeholdersInSource) {
+			int size = preservedTokens.size();
+			String resolved = CssTokenizer.resolveComments(css, comments, preservedTokens);
+			if (resolved != null) {
+				return resolved;
+			}
+			preservedTokens.subList(size, preservedTokens.size()).clear();
+		}
+
 		for (i = 0, max = comments.size(); i < max; i += 1) {
 
 			token = comments.get(i);
@@ -221,6 +360,29 @@ public class CssCompressor {
 			css = css.replace("/*" + placeholder + "*/", "");
 		}
 
+		return css;
+	}
+
+	public void compress(Writer out, int linebreakpos) throws IOException {
+
+		Matcher m;
+		String css = srcsb.toString();
+		boolean placeholdersInSource = css.contains(PLACEHOLDER_NAME);
+
+		int i;
+		int max;
+		ArrayList<String> preservedTokens = new ArrayList<>(0);
+		StringBuilder sb;
+
+		// preserve comments, strings and tokens which must not be minified
+		String tokenized = engine == Engine.TOKENIZER ? CssTokenizer.preserveTokens(css, preservedTokens) : null;
+		if (tokenized != null) {
+			css = tokenized;
+		} else {
+			preservedTokens.clear();
+			css = preserveTokens(css, preservedTokens);
+		}
+
 		// preserve \9 IE hack
 		final String backslash9 = "\\9";
 		while (css.contains(backslash9)) {
@@ -230,33 +392,30 @@ public class CssCompressor {
 
 		// Normalize all whitespace strings to single spaces. Easier to work with that
 		// way.
-		css = css.replaceAll("\\s+", " ");
+		css = WHITESPACE.matcher(css).replaceAll(" ");
 
 		// Remove the spaces before the things that should not have spaces before them.
 		// But, be careful not to turn "p :link {...}" into "p:link{...}"
 		// Swap out any pseudo-class colons with the token, and then swap back.
 		sb = new StringBuilder();
-		p = Pattern.compile("(^|})((^|([^{:])+):)+([^{]*\\{)");
-		m = p.matcher(css);
+		m = PSEUDO_CLASS.matcher(css);
 		while (m.find()) {
 			String s = m.group();
-			s = s.replaceAll(":", "___YUICSSMIN_PSEUDOCLASSCOLON___");
-			s = s.replaceAll("\\\\", "\\\\\\\\").replaceAll("\\$", "\\\\\\$");
-			m.appendReplacement(sb, s);
+			s = s.replace(":", "___YUICSSMIN_PSEUDOCLASSCOLON___");
+			m.appendReplacement(sb, Matcher.quoteReplacement(s));
 		}
 		m.appendTail(sb);
 		css = sb.toString();
 		// Remove spaces before the things that should not have spaces before them.
-		css = css.replaceAll("\\s+([!{};:>+()\\],])", "$1");
+		css = SPACE_BEFORE.matcher(css).replaceAll("$1");
 		// Restore spaces for !important
-		css = css.replaceAll("!important", " !important");
+		css = css.replace("!important", " !important");
 		// bring back the colon
-		css = css.replaceAll("___YUICSSMIN_PSEUDOCLASSCOLON___", ":");
+		css = css.replace("___YUICSSMIN_PSEUDOCLASSCOLON___", ":");
 
 		// retain space for special IE6 cases
 		sb = new StringBuilder();
-		p = Pattern.compile("(?i):first-(line|letter)([{,])");
-		m = p.matcher(css);
+		m = FIRST_LINE_LETTER.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, ":first-" + m.group(1).toLowerCase() + " " + m.group(2));
 		}
@@ -264,14 +423,13 @@ public class CssCompressor {
 		css = sb.toString();
 
 		// no space after the end of a preserved comment
-		css = css.replaceAll("\\*/ ", "*/");
+		css = css.replace("*/ ", "*/");
 
 		// If there are multiple @charset directives, push them to the top of the file.
 		sb = new StringBuilder();
-		p = Pattern.compile("(?i)^(.*)(@charset)( \"[^\"]*\";)");
-		m = p.matcher(css);
+		m = CHARSET.matcher(css);
 		while (m.find()) {
-			String s = m.group(1).replaceAll("\\\\", "\\\\\\\\").replaceAll("\\$", "\\\\\\$");
+			String s = Matcher.quoteReplacement(m.group(1));
 			m.appendReplacement(sb, m.group(2).toLowerCase() + m.group(3) + s);
 		}
 		m.appendTail(sb);
@@ -280,8 +438,7 @@ public class CssCompressor {
 		// When all @charset are at the top, remove the second and after (as they are
 		// completely ignored).
 		sb = new StringBuilder();
-		p = Pattern.compile("(?i)^((\\s*)(@charset)( [^;]+;\\s*))+");
-		m = p.matcher(css);
+		m = CHARSET_DUPLICATES.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, m.group(2) + m.group(3).toLowerCase() + m.group(4));
 		}
@@ -290,9 +447,7 @@ public class CssCompressor {
 
 		// lowercase some popular @directives (@charset is done right above)
 		sb = new StringBuilder();
-		p = Pattern.compile(
-				"(?i)@(font-face|import|(?:-(?:atsc|khtml|moz|ms|o|wap|webkit)-)?keyframe|media|page|namespace)");
-		m = p.matcher(css);
+		m = DIRECTIVES.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, '@' + m.group(1).toLowerCase());
 		}
@@ -301,9 +456,7 @@ public class CssCompressor {
 
 		// lowercase some more common pseudo-elements
 		sb = new StringBuilder();
-		p = Pattern.compile(
-				"(?i):(active|after|before|checked|disabled|empty|enabled|first-(?:child|of-type)|focus|hover|last-(?:child|of-type)|link|only-(?:child|of-type)|root|:selection|target|visited)");
-		m = p.matcher(css);
+		m = PSEUDO_ELEMENTS.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, ":" + m.group(1).toLowerCase());
 		}
@@ -312,9 +465,7 @@ public class CssCompressor {
 
 		// lowercase some more common functions
 		sb = new StringBuilder();
-		p = Pattern.compile(
-				"(?i):(lang|not|nth-child|nth-last-child|nth-last-of-type|nth-of-type|(?:-(?:moz|webkit)-)?any)\\(");
-		m = p.matcher(css);
+		m = PSEUDO_FUNCTIONS.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, ":" + m.group(1).toLowerCase() + '(');
 		}
@@ -325,9 +476,7 @@ public class CssCompressor {
 		// NOTE: rgb() isn't useful as we replace with #hex later, as well as and() is
 		// already done for us right after this
 		sb = new StringBuilder();
-		p = Pattern.compile(
-				"(?i)([:,( ]\\s*)(attr|color-stop|from|rgba|to|url|(?:-(?:atsc|khtml|moz|ms|o|wap|webkit)-)?(?:calc|max|min|(?:repeating-)?(?:linear|radial)-gradient)|-webkit-gradient)");
-		m = p.matcher(css);
+		m = VALUE_FUNCTIONS.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, m.group(1) + m.group(2).toLowerCase());
 		}
@@ -336,64 +485,58 @@ public class CssCompressor {
 
 		// Put the space back in some cases, to support stuff like
 		// @media screen and (-webkit-min-device-pixel-ratio:0){
-		css = css.replaceAll("(?i)\\band\\(", "and (");
-		css = css.replaceAll("(?i)\\bor\\(", "or (");
+		css = AND_PAREN.matcher(css).replaceAll("and (");
+		css = OR_PAREN.matcher(css).replaceAll("or (");
 
 		// Remove the spaces after the things that should not have spaces after them.
-		css = css.replaceAll("([!{}:;>+(\\[,])\\s+", "$1");
+		css = SPACE_AFTER.matcher(css).replaceAll("$1");
 
 		// remove unnecessary semicolons
-		css = css.replaceAll(";+}", "}");
+		css = SEMICOLON_BEFORE_BRACE.matcher(css).replaceAll("}");
 
 		// Replace 0(px,em) with 0. (don't replace seconds are they are needed for transitions to be valid)
 		String oldCss;
-		p = Pattern.compile("(?i)(^|: ?)((?:[0-9a-z-.]+ )*?)?(?:0?\\.)?0(?:px|em|in|cm|mm|pc|pt|ex|deg|g?rad|k?hz)");
 		do {
 			oldCss = css;
-			m = p.matcher(css);
+			m = ZERO_UNITS.matcher(css);
 			css = m.replaceAll("$1$20");
 		} while (!css.equals(oldCss));
 
 		// We do the same with % but don't replace the 0% in keyframes
-		p = Pattern.compile("(?i)(: ?)((?:[0-9a-z-.]+ )*?)?(?:0?\\.)?0%");
 		do {
 			oldCss = css;
-			m = p.matcher(css);
+			m = ZERO_PERCENT.matcher(css);
 			css = m.replaceAll("$1$20");
 		} while (!(css.equals(oldCss)));
 
 		//Replace the keyframe 100% step with 'to' which is shorter
-		p = Pattern.compile("(?i)(^|,|\\{) ?100% ?\\{");
 		do {
 			oldCss = css;
-			m = p.matcher(css);
+			m = KEYFRAME_100.matcher(css);
 			css = m.replaceAll("$1to{");
 		} while (!(css.equals(oldCss)));
 
 		// Replace 0(px,em,%) with 0 inside groups (e.g. -MOZ-RADIAL-GRADIENT(CENTER
 		// 45DEG, CIRCLE CLOSEST-SIDE, ORANGE 0%, RED 100%))
 		// Avoid replacement within hsla(), where percents are required for `s` and `l` arguments.
-		p = Pattern.compile("(?i)(?<!hsla?|rgba?|linear-gradient?)\\( ?((?:[#0-9a-z-.]+[ ,])*)?(?:0?\\.)?0(?:px|em|%|in|cm|mm|pc|pt|ex|deg|g?rad|m?s|k?hz)");
 		do {
 			oldCss = css;
-			m = p.matcher(css);
+			m = ZERO_UNITS_IN_PARENS.matcher(css);
 			css = m.replaceAll("($10");
 		} while (!css.equals(oldCss));
 
 		// Replace x.0(px,em,%) with x(px,em,%).
-		css = css.replaceAll("([0-9])\\.0(px|em|%|in|cm|mm|pc|pt|ex|deg|m?s|g?rad|k?hz| |;)", "$1$2");
+		css = UNIT_AFTER_DOT_ZERO.matcher(css).replaceAll("$1$2");
 
 		// Replace 0 0 0 0; with 0.
-		css = css.replaceAll(":0 0 0 0([;}])", ":0$1");
-		css = css.replaceAll(":0 0 0([;}])", ":0$1");
-		css = css.replaceAll("(?<!flex):0 0([;}])", ":0$1");
+		css = FOUR_ZEROS.matcher(css).replaceAll(":0$1");
+		css = THREE_ZEROS.matcher(css).replaceAll(":0$1");
+		css = TWO_ZEROS.matcher(css).replaceAll(":0$1");
 
 		// Replace background-position:0; with background-position:0 0;
 		// same for transform-origin
 		sb = new StringBuilder();
-		p = Pattern.compile(
-				"(?i)(background-position|webkit-mask-position|transform-origin|webkit-transform-origin|moz-transform-origin|o-transform-origin|ms-transform-origin|box-shadow|text-shadow):0([;}])");
-		m = p.matcher(css);
+		m = POSITION_ZERO.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, m.group(1).toLowerCase() + ":0 0" + m.group(2));
 		}
@@ -401,12 +544,11 @@ public class CssCompressor {
 		css = sb.toString();
 
 		// Replace 0.6 to .6, but only when preceded by : or a white-space
-		css = css.replaceAll("(:|\\s)0+\\.(\\d+)", "$1.$2");
+		css = LEADING_ZEROS.matcher(css).replaceAll("$1.$2");
 
 		// Shorten colors from rgb(51,102,153) to #336699
 		// This makes it more likely that it'll get further compressed in the next step.
-		p = Pattern.compile("rgb\\s*\\(\\s*([0-9,\\s]+)\\s*\\)");
-		m = p.matcher(css);
+		m = RGB.matcher(css);
 		sb = new StringBuilder();
 		while (m.find()) {
 			String[] rgbcolors = m.group(1).split(",");
@@ -440,11 +582,7 @@ public class CssCompressor {
 		// We also want to make sure we're only compressing #AABBCC patterns inside { },
 		// not id selectors ( #FAABAC {} )
 		// We also want to avoid compressing invalid values (e.g. #AABBCCD to #ABCD)
-		p = Pattern.compile(
-				"(=\\s*?[\"']?)?" + "#([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])([0-9a-fA-F])"
-						+ "(:?}|[^0-9a-fA-F{][^{]*?})");
-
-		m = p.matcher(css);
+		m = HEX_COLOR.matcher(css);
 		sb = new StringBuilder();
 		int index = 0;
 
@@ -480,22 +618,20 @@ public class CssCompressor {
 		css = sb.toString();
 
 		// Replace #f00 -> red
-		css = css.replaceAll("(:|\\s)(#f00)([;}])", "$1red$3");
+		css = COLOR_RED.matcher(css).replaceAll("$1red$3");
 		// Replace other short color keywords
-		css = css.replaceAll("(:|\\s)(#000080)([;}])", "$1navy$3");
-		css = css.replaceAll("(:|\\s)(#808080)([;}])", "$1gray$3");
-		css = css.replaceAll("(:|\\s)(#808000)([;}])", "$1olive$3");
-		css = css.replaceAll("(:|\\s)(#800080)([;}])", "$1purple$3");
-		css = css.replaceAll("(:|\\s)(#c0c0c0)([;}])", "$1silver$3");
-		css = css.replaceAll("(:|\\s)(#008080)([;}])", "$1teal$3");
-		css = css.replaceAll("(:|\\s)(#ffa500)([;}])", "$1orange$3");
-		css = css.replaceAll("(:|\\s)(#800000)([;}])", "$1maroon$3");
+		css = COLOR_NAVY.matcher(css).replaceAll("$1navy$3");
+		css = COLOR_GRAY.matcher(css).replaceAll("$1gray$3");
+		css = COLOR_OLIVE.matcher(css).replaceAll("$1olive$3");
+		css = COLOR_PURPLE.matcher(css).replaceAll("$1purple$3");
+		css = COLOR_SILVER.matcher(css).replaceAll("$1silver$3");
+		css = COLOR_TEAL.matcher(css).replaceAll("$1teal$3");
+		css = COLOR_ORANGE.matcher(css).replaceAll("$1orange$3");
+		css = COLOR_MAROON.matcher(css).replaceAll("$1maroon$3");
 
 		// border: none -> border:0
 		sb = new StringBuilder();
-		p = Pattern
-				.compile("(?i)(border|border-top|border-right|border-bottom|border-left|outline|background):none([;}])");
-		m = p.matcher(css);
+		m = BORDER_NONE.matcher(css);
 		while (m.find()) {
 			m.appendReplacement(sb, m.group(1).toLowerCase() + ":0" + m.group(2));
 		}
@@ -503,17 +639,17 @@ public class CssCompressor {
 		css = sb.toString();
 
 		// shorter opacity IE filter
-		css = css.replaceAll("(?i)progid:DXImageTransform.Microsoft.Alpha\\(Opacity=", "alpha(opacity=");
+		css = ALPHA_OPACITY.matcher(css).replaceAll("alpha(opacity=");
 
 		// Find a fraction that is used for Opera's -o-device-pixel-ratio query
 		// Add token to add the "\" back in later
-		css = css.replaceAll("\\(([\\-A-Za-z]+):([0-9]+)/([0-9]+)\\)", "($1:$2___YUI_QUERY_FRACTION___$3)");
+		css = QUERY_FRACTION.matcher(css).replaceAll("($1:$2___YUI_QUERY_FRACTION___$3)");
 
 		// Remove empty rules.
-		css = css.replaceAll("[^}{/;]+\\{}", "");
+		css = EMPTY_RULE.matcher(css).replaceAll("");
 
 		// Add "\" back to fix Opera -o-device-pixel-ratio query
-		css = css.replaceAll("___YUI_QUERY_FRACTION___", "/");
+		css = css.replace("___YUI_QUERY_FRACTION___", "/");
 
 		// TODO: Should this be after we re-insert tokens. These could alter the break
 		// points. However then
@@ -538,29 +674,32 @@ public class CssCompressor {
 
 		// Replace multiple semicolons in a row by a single one
 		// See SF bug #1980989
-		css = css.replaceAll(";;+", ";");
+		css = MULTIPLE_SEMICOLONS.matcher(css).replaceAll(";");
 
 		// restore preserved comments and strings
-		for (i = 0, max = preservedTokens.size(); i < max; i++) {
-			css = css.replace("___YUICSSMIN_PRESERVED_TOKEN_" + i + "___", preservedTokens.get(i));
+		if (placeholdersInSource) {
+			for (i = 0, max = preservedTokens.size(); i < max; i++) {
+				css = css.replace("___YUICSSMIN_PRESERVED_TOKEN_" + i + "___", preservedTokens.get(i));
+			}
+		} else {
+			css = restorePlaceholders(css, PRESERVED_TOKEN, preservedTokens);
 		}
 
 		css = performCalcCompressions(css);
 
 		// #240 add spaces after parens
-		css = css.replaceAll("\\)(?=[a-zA-Z0-9])", ") ")       // Add space after ')' if followed by letter/digit
-				 .replaceAll("(?<=[a-zA-Z0-9])(?=calc)", " "); // Add space before "calc" if preceded by a letter/digit
+		css = SPACE_AFTER_PAREN.matcher(css).replaceAll(") ");  // Add space after ')' if followed by letter/digit
+		css = SPACE_BEFORE_CALC.matcher(css).replaceAll(" "); // Add space before "calc" if preceded by a letter/digit
 
 		// #243 put spaces back around +
 		css = formatPlusInsideParens(css);
 
 		// #168 remove spaces inside "var(--month - margin)"
 		sb = new StringBuilder();
-		p = Pattern.compile("var\\(--[^;})]*\\)");
-		m = p.matcher(css);
+		m = VAR.matcher(css);
 		while (m.find()) {
 			String s = m.group();
-			s = s.replaceAll("\\s+", "");
+			s = WHITESPACE.matcher(s).replaceAll("");
 			m.appendReplacement(sb, s);
 		}
 		m.appendTail(sb);
@@ -573,14 +712,60 @@ public class CssCompressor {
 		out.write(css);
 	}
 
+	/**
+	 * Replaces all placeholders in a single pass. Like one replace() call per
+	 * placeholder, the values are not searched for placeholders again. This is only
+	 * the same as long as the source contains no text looking like a placeholder,
+	 * which could overlap with real placeholders.
+	 *
+	 * @param css    - CSS string with placeholders
+	 * @param prefix - placeholder up to the index
+	 * @param values - array of placeholder values
+	 * @return the CSS string with the placeholders replaced
+	 */
+	static String restorePlaceholders(String css, String prefix, List<String> values) {
+		int startIndex = css.indexOf(prefix);
+		if (startIndex < 0) {
+			return css;
+		}
+
+		StringBuilder sb = new StringBuilder(css.length());
+		int appendIndex = 0;
+
+		while (startIndex >= 0) {
+			int numberStart = startIndex + prefix.length();
+			int numberEnd = numberStart;
+			while (numberEnd < css.length() && css.charAt(numberEnd) >= '0' && css.charAt(numberEnd) <= '9') {
+				numberEnd++;
+			}
+
+			int index = -1;
+			int digits = numberEnd - numberStart;
+			if (digits > 0 && digits < 10 && (digits == 1 || css.charAt(numberStart) != '0')
+					&& css.startsWith("___", numberEnd)) {
+				index = Integer.parseInt(css.substring(numberStart, numberEnd));
+			}
+
+			if (index >= 0 && index < values.size()) {
+				sb.append(css, appendIndex, startIndex).append(values.get(index));
+				appendIndex = numberEnd + 3;
+				startIndex = css.indexOf(prefix, appendIndex);
+			} else {
+				startIndex = css.indexOf(prefix, startIndex + 1);
+			}
+		}
+
+		sb.append(css, appendIndex, css.length());
+		return sb.toString();
+	}
+
 	/**
 	 * Fix #243 add spaces around + side inside parens() like calc().
 	 * @param input the input the process
 	 * @return the CSS string output
 	 */
 	public static String formatPlusInsideParens(String input) {
-		Pattern parenPattern = Pattern.compile("(?<!url)\\(([^)]*?)\\)", Pattern.CASE_INSENSITIVE);
-		Matcher matcher = parenPattern.matcher(input);
+		Matcher matcher = PARENS.matcher(input);
 		StringBuilder result = new StringBuilder();
 
 		while (matcher.find()) {
@@ -596,7 +781,7 @@ public class CssCompressor {
 				matcher.appendReplacement(result, matcher.group()); // Leave it unchanged
 			} else {
 				String inner = matcher.group(1);
-				String replaced = inner.replaceAll("\\s*\\+\\s*", " + ");
+				String replaced = PLUS.matcher(inner).replaceAll(" + ");
 				matcher.appendReplacement(result, "(" + Matcher.quoteReplacement(replaced) + ")");
 			}
 		}
@@ -676,14 +861,13 @@ public class CssCompressor {
 	// https://developer.mozilla.org/en-US/docs/Web/CSS/calc
 	// Added by Eric Arnol-Martin (earnolmartin@gmail.com)
 	private static String compressCalcForm(String calcForm) {
-		return calcForm
-				.replaceAll("\\s+", "")
-				.replaceAll("(?<=[-|%)pxemrvhw\\d])--", " - -")
-				.replaceAll("(?<=[-|%)pxemrvhw\\d])\\+", " + ")
-				.replaceAll("(?<=[-|%)pxemrvhw\\d])-", " - ")
-				.replaceAll("(?<=[-|%)pxemrvhw\\d])\\*", " * ")
-				.replaceAll("(?<=[-|%)pxemrvhw\\d])/", " / ")
-				.replaceAll("(var\\(-\\s-\\s)", "var(--")
-				.replaceAll("\\)(var\\(--)", ") var(--");
+		calcForm = WHITESPACE.matcher(calcForm).replaceAll("");
+		calcForm = CALC_DOUBLE_MINUS.matcher(calcForm).replaceAll(" - -");
+		calcForm = CALC_PLUS.matcher(calcForm).replaceAll(" + ");
+		calcForm = CALC_MINUS.matcher(calcForm).replaceAll(" - ");
+		calcForm = CALC_MULTIPLY.matcher(calcForm).replaceAll(" * ");
+		calcForm = CALC_DIVIDE.matcher(calcForm).replaceAll(" / ");
+		calcForm = CALC_VAR.matcher(calcForm).replaceAll("var(--");
+		return CALC_PAREN_VAR.matcher(calcForm).replaceAll(") var(--");
 	}
 }
\ No newline at end of file
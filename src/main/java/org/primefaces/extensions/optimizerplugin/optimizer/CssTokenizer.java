@@ -0,0 +1,628 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.optimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass lexer replacing comments, strings, data URIs, calc() and Matrix
+ * filters by placeholders. It produces the same CSS string and preserved tokens
+ * as {@link CssCompressor#preserveTokens(String, ArrayList)}, but in linear time:
+ * the regex engine runs one pass per kind of token.
+ * <p>
+ * The regex engine finds the kinds of tokens one after another, e.g. a data URI
+ * inside a string is preserved before the string. The lexer reads tokens from
+ * left to right, so for such nested tokens it gives up and the caller falls back
+ * to the regex engine.
+ */
+final class CssTokenizer {
+
+	private static final String PLACEHOLDER_NAME = "YUICSSMIN";
+
+	private static final String PRESERVED_TOKEN = "___YUICSSMIN_PRESERVED_TOKEN_";
+
+	private static final String CANDIDATE_COMMENT = "___YUICSSMIN_PRESERVE_CANDIDATE_COMMENT_";
+
+	private static final String PLACEHOLDER_END = "___";
+
+	private static final String PROGID_MATRIX = "progid:DXImageTransform.Microsoft.Matrix";
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private static final Pattern ALPHA_OPACITY = Pattern
+			.compile("(?i)progid:DXImageTransform.Microsoft.Alpha\\(Opacity=");
+
+	// kinds of tokens in the order of the regex passes, placeholders are numbered in this order
+	private static final int SVG_URL = 0;
+
+	private static final int DATA_URL = 1;
+
+	private static final int CALC = 2;
+
+	private static final int PROGID = 3;
+
+	private static final int STRING = 4;
+
+	private static final String[] PRESERVERS = { "url", "url", "calc", PROGID_MATRIX, null };
+
+	private final String css;
+
+	private final List<String> comments;
+
+	private final List<List<String>> tokensByKind = new ArrayList<>(STRING + 1);
+
+	// start, end, kind, index within kind and quote of every token in document order
+	private final List<int[]> tokens = new ArrayList<>();
+
+	private boolean nested;
+
+	private CssTokenizer(String css, List<String> comments) {
+		this.css = css;
+		this.comments = comments;
+		for (int kind = SVG_URL; kind <= STRING; kind++) {
+			tokensByKind.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * @param source          - full CSS string
+	 * @param preservedTokens - array the token values are added to
+	 * @return the CSS string with placeholders or null if the regex engine must
+	 *         be used
+	 */
+	static String preserveTokens(String source, List<String> preservedTokens) {
+		if (source.contains(PLACEHOLDER_NAME)) {
+			// text looking like a placeholder may overlap with real placeholders
+			return null;
+		}
+
+		List<String> comments = new ArrayList<>();
+		CssTokenizer tokenizer = new CssTokenizer(maskComments(source, comments), comments);
+		if (!tokenizer.tokenize()) {
+			return null;
+		}
+
+		return tokenizer.assemble(preservedTokens);
+	}
+
+	/**
+	 * Replaces the content of all comments by placeholders. Mirrors the first
+	 * loop of the regex engine including its handling of unterminated comments.
+	 */
+	private static String maskComments(String source, List<String> comments) {
+		StringBuilder sb = new StringBuilder(source.length());
+		int totallen = source.length();
+		int pos = 0;
+		int startIndex;
+
+		while ((startIndex = source.indexOf("/*", pos)) >= 0) {
+			sb.append(source, pos, startIndex + 2);
+
+			int contentStart = startIndex + 2;
+			int contentEnd = source.indexOf("*/", contentStart);
+			if (contentEnd < 0) {
+				// the regex engine ends an unterminated comment at the original length of
+				// the already modified stylesheet
+				contentEnd = contentStart + (totallen - sb.length());
+			}
+
+			comments.add(source.substring(contentStart, contentEnd));
+			sb.append(CANDIDATE_COMMENT).append(comments.size() - 1).append(PLACEHOLDER_END);
+			pos = contentEnd;
+		}
+
+		sb.append(source, pos, source.length());
+		return sb.toString();
+	}
+
+	/**
+	 * Resolves the comment placeholders of the regex engine in one pass.
+	 *
+	 * @param css             - CSS string with placeholders of comments
+	 * @param comments        - array of comment values
+	 * @param preservedTokens - array the preserved comments are added to
+	 * @return the CSS string or null if the placeholders are not in index order
+	 */
+	static String resolveComments(String css, List<String> comments, List<String> preservedTokens) {
+		CssTokenizer tokenizer = new CssTokenizer(css, comments);
+		CommentResolver resolver = tokenizer.new CommentResolver(preservedTokens);
+		StringBuilder sb = new StringBuilder(css.length());
+		if (!resolver.appendLiteral(sb, 0, css.length())) {
+			return null;
+		}
+
+		resolver.processUpTo(comments.size());
+		return sb.toString();
+	}
+
+	/**
+	 * Reads all tokens in one pass.
+	 *
+	 * @return false if tokens are nested and the regex engine must be used
+	 */
+	private boolean tokenize() {
+		int length = css.length();
+		int pos = 0;
+
+		while (pos < length) {
+			int next;
+			switch (css.charAt(pos)) {
+				case 'u':
+				case 'U':
+					next = readDataUrl(pos);
+					break;
+				case 'c':
+				case 'C':
+					next = regionMatches(pos, "calc(") ? readFunction(pos, pos + 5, CALC) : -1;
+					break;
+				case 'p':
+				case 'P':
+					next = matchesProgidMatrix(pos) ? readFunction(pos, pos + PROGID_MATRIX.length(), PROGID) : -1;
+					break;
+				case '"':
+				case '\'':
+					next = readString(pos);
+					break;
+				default:
+					next = -1;
+			}
+
+			if (nested) {
+				return false;
+			}
+
+			pos = next > pos ? next : pos + 1;
+		}
+
+		return true;
+	}
+
+	private int readDataUrl(int start) {
+		if (!matchesDataUrl(start)) {
+			return -1;
+		}
+
+		int pos = skipWhitespace(start + 4);
+		char quote = 0;
+		if (css.charAt(pos) == '"' || css.charAt(pos) == '\'') {
+			quote = css.charAt(pos++);
+		}
+
+		pos = skipWhitespace(pos + 5);
+		if (regionMatches(pos, "image/svg+xml")) {
+			return preserve(start, pos + 13, quote, SVG_URL);
+		}
+
+		return preserve(start, pos, quote, DATA_URL);
+	}
+
+	private int readFunction(int start, int pos, int kind) {
+		pos = skipWhitespace(pos);
+		char quote = 0;
+		if (pos < css.length() && (css.charAt(pos) == '"' || css.charAt(pos) == '\'')) {
+			quote = css.charAt(pos++);
+		}
+
+		return preserve(start, pos, quote, kind);
+	}
+
+	/**
+	 * Same terminator search as {@link CssCompressor#preserveToken}.
+	 *
+	 * @return the index after the token or -1 if no terminator was found
+	 */
+	private int preserve(int start, int matchEnd, char quote, int kind) {
+		int startIndex = start + PRESERVERS[kind].length() + 1;
+		String terminator = quote == 0 ? ")" : String.valueOf(quote);
+		int maxIndex = css.length() - 1;
+		boolean foundTerminator = false;
+
+		int endIndex = matchEnd - 1;
+		while (!foundTerminator && endIndex + 1 <= maxIndex) {
+			endIndex = css.indexOf(terminator, endIndex + 1);
+
+			if (endIndex <= 0) {
+				break;
+			} else if (css.charAt(endIndex - 1) != '\\') {
+				foundTerminator = true;
+				if (quote != 0) {
+					endIndex = css.indexOf(")", endIndex);
+				}
+			}
+		}
+
+		if (!foundTerminator) {
+			// the regex engine retries the data URI pass on an unterminated SVG URI, and
+			// placeholders of earlier passes could provide the missing terminator
+			nested = kind == SVG_URL || containsEarlierKind(start + 1, css.length(), kind);
+			return -1;
+		}
+
+		String token = css.substring(startIndex, endIndex);
+		if (containsEarlierKind(start + 1, endIndex + 1, kind)) {
+			nested = true;
+			return -1;
+		}
+
+		if (kind == DATA_URL) {
+			token = WHITESPACE.matcher(token).replaceAll("");
+		}
+
+		addToken(start, endIndex + 1, kind, token, (char) 0);
+		return endIndex + 1;
+	}
+
+	/**
+	 * Reads a string like the regex
+	 * <code>"([^"\r\n\f\\]|\\[^0-9a-fA-F]|\\[0-9a-fA-F]{1,6}(?>\r\n|[ \t\r\n\f])?)*+"</code>.
+	 *
+	 * @return the index after the string or -1 if it is not terminated
+	 */
+	private int readString(int start) {
+		char quote = css.charAt(start);
+		int length = css.length();
+		int pos = start + 1;
+
+		while (pos < length) {
+			char c = css.charAt(pos);
+			if (c == quote) {
+				return preserveString(start, pos + 1);
+			} else if (c == '\r' || c == '\n' || c == '\f') {
+				break;
+			} else if (c != '\\') {
+				pos++;
+			} else if (pos + 1 >= length) {
+				break;
+			} else if (!isHexDigit(css.charAt(pos + 1))) {
+				pos += 2;
+			} else {
+				// escaped unicode, optionally followed by one white space
+				int max = Math.min(pos + 7, length);
+				pos++;
+				while (pos < max && isHexDigit(css.charAt(pos))) {
+					pos++;
+				}
+
+				if (css.startsWith("\r\n", pos)) {
+					pos += 2;
+				} else if (pos < length && " \t\r\n\f".indexOf(css.charAt(pos)) >= 0) {
+					pos++;
+				}
+			}
+		}
+
+		// tokens of earlier passes could make an unterminated string valid
+		nested = containsEarlierKind(start + 1, Math.min(pos + 1, length), STRING);
+		return -1;
+	}
+
+	private int preserveString(int start, int end) {
+		if (containsEarlierKind(start + 1, end, STRING)) {
+			nested = true;
+			return -1;
+		}
+
+		String token = css.substring(start + 1, end - 1);
+
+		// maybe the string contains a comment-like substring?
+		// one, maybe more? put'em back then
+		token = CssCompressor.restorePlaceholders(token, CANDIDATE_COMMENT, comments);
+
+		// minify alpha opacity in filter strings
+		token = ALPHA_OPACITY.matcher(token).replaceAll("alpha(opacity=");
+
+		addToken(start, end, STRING, token, css.charAt(start));
+		return end;
+	}
+
+	private void addToken(int start, int end, int kind, String token, char quote) {
+		List<String> values = tokensByKind.get(kind);
+		tokens.add(new int[] { start, end, kind, values.size(), quote });
+		values.add(token);
+	}
+
+	/**
+	 * Checks whether a token of an earlier pass of the regex engine starts in the
+	 * given range. Any start of such a token counts, even if it is not terminated.
+	 */
+	private boolean containsEarlierKind(int from, int to, int kind) {
+		if (kind == SVG_URL) {
+			return false;
+		}
+
+		for (int i = from; i < to; i++) {
+			switch (css.charAt(i)) {
+				case 'u':
+				case 'U':
+					if (matchesDataUrl(i)) {
+						return true;
+					}
+					break;
+				case 'c':
+				case 'C':
+					if (kind > CALC && regionMatches(i, "calc(")) {
+						return true;
+					}
+					break;
+				case 'p':
+				case 'P':
+					if (kind > PROGID && matchesProgidMatrix(i)) {
+						return true;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Writes the CSS with numbered placeholders and resolves comments the same
+	 * way as the comment loop of the regex engine.
+	 *
+	 * @return the CSS string or null if the regex engine must be used
+	 */
+	private String assemble(List<String> preservedTokens) {
+		int[] firstIndex = new int[STRING + 1];
+		for (int kind = SVG_URL; kind <= STRING; kind++) {
+			firstIndex[kind] = preservedTokens.size();
+			preservedTokens.addAll(tokensByKind.get(kind));
+		}
+
+		CommentResolver resolver = new CommentResolver(preservedTokens);
+		StringBuilder sb = new StringBuilder(css.length());
+		int pos = 0;
+
+		for (int[] token : tokens) {
+			if (!resolver.appendLiteral(sb, pos, token[0])) {
+				return null;
+			}
+
+			int kind = token[2];
+			int index = firstIndex[kind] + token[3];
+			if (kind == STRING) {
+				char quote = (char) token[4];
+				sb.append(quote).append(PRESERVED_TOKEN).append(index).append(PLACEHOLDER_END).append(quote);
+			} else {
+				sb.append(PRESERVERS[kind]).append('(').append(PRESERVED_TOKEN).append(index).append(PLACEHOLDER_END)
+						.append(')');
+			}
+
+			pos = token[1];
+		}
+
+		if (!resolver.appendLiteral(sb, pos, css.length())) {
+			return null;
+		}
+
+		// comments only found inside of tokens still count
+		resolver.processUpTo(comments.size());
+
+		return sb.toString();
+	}
+
+	/**
+	 * Processes comments in index order like the regex engine: comments inside of
+	 * tokens are not part of the CSS string anymore, but preserved comments among
+	 * them are numbered nevertheless.
+	 */
+	private final class CommentResolver {
+
+		private final List<String> preservedTokens;
+
+		// placeholders of comments replaced by the Mac/IE5 hack
+		private final String[] hackReplacements = new String[comments.size() + 1];
+
+		private int next = 0;
+
+		private CommentResolver(List<String> preservedTokens) {
+			this.preservedTokens = preservedTokens;
+		}
+
+		private boolean appendLiteral(StringBuilder sb, int from, int to) {
+			int pos = from;
+			int placeholderStart;
+
+			while ((placeholderStart = css.indexOf(CANDIDATE_COMMENT, pos)) >= 0 && placeholderStart < to) {
+				int numberStart = placeholderStart + CANDIDATE_COMMENT.length();
+				int numberEnd = numberStart;
+				while (numberEnd < to && Character.isDigit(css.charAt(numberEnd))) {
+					numberEnd++;
+				}
+
+				if (numberEnd == numberStart || !css.startsWith(PLACEHOLDER_END, numberEnd)
+						|| numberEnd + PLACEHOLDER_END.length() > to) {
+					return false;
+				}
+
+				int index = Integer.parseInt(css.substring(numberStart, numberEnd));
+				if (index < next || index >= comments.size()) {
+					return false;
+				}
+
+				sb.append(css, pos, placeholderStart);
+				pos = process(sb, index, placeholderStart, numberEnd + PLACEHOLDER_END.length());
+			}
+
+			sb.append(css, pos, to);
+			return true;
+		}
+
+		private void processUpTo(int index) {
+			while (next < index) {
+				if (hackReplacements[next] == null) {
+					String token = comments.get(next);
+					if (token.startsWith("!")) {
+						preservedTokens.add(token);
+					} else if (token.endsWith("\\")) {
+						addHack(next);
+						continue;
+					}
+				}
+
+				next++;
+			}
+		}
+
+		/**
+		 * Processes the comment with the given index found in the CSS string.
+		 *
+		 * @return the index after the placeholder or the comment
+		 */
+		private int process(StringBuilder sb, int index, int placeholderStart, int placeholderEnd) {
+			processUpTo(index);
+
+			if (hackReplacements[index] != null) {
+				sb.append(hackReplacements[index]);
+				next = index + 1;
+				return placeholderEnd;
+			}
+
+			String token = comments.get(index);
+			next = index + 1;
+
+			// ! in the first position of the comment means preserve
+			if (token.startsWith("!")) {
+				preservedTokens.add(token);
+				appendPreserved(sb, preservedTokens.size() - 1);
+				return placeholderEnd;
+			}
+
+			// \ in the last position looks like hack for Mac/IE5
+			// shorten that to /*\*/ and the next one to /**/
+			if (token.endsWith("\\")) {
+				addHack(index);
+				appendPreserved(sb, preservedTokens.size() - 2);
+				return placeholderEnd;
+			}
+
+			// keep empty comments after child selectors (IE7 hack)
+			int length = sb.length();
+			if (token.isEmpty() && length > 2 && sb.charAt(length - 3) == '>') {
+				preservedTokens.add("");
+				appendPreserved(sb, preservedTokens.size() - 1);
+				return placeholderEnd;
+			}
+
+			// in all other cases kill the comment
+			if (length >= 2 && sb.charAt(length - 2) == '/' && sb.charAt(length - 1) == '*'
+					&& css.startsWith("*/", placeholderEnd)) {
+				sb.setLength(length - 2);
+				return placeholderEnd + 2;
+			}
+
+			// unterminated comments keep their placeholder
+			sb.append(css, placeholderStart, placeholderEnd);
+			return placeholderEnd;
+		}
+
+		private void addHack(int index) {
+			preservedTokens.add("\\");
+			preservedTokens.add("");
+			hackReplacements[index + 1] = PRESERVED_TOKEN + (preservedTokens.size() - 1) + PLACEHOLDER_END;
+			next = index + 1;
+		}
+
+		private void appendPreserved(StringBuilder sb, int index) {
+			sb.append(PRESERVED_TOKEN).append(index).append(PLACEHOLDER_END);
+		}
+	}
+
+	/**
+	 * Matches the regex <code>(?i)url\(\s*(["']?)data\:</code>.
+	 */
+	private boolean matchesDataUrl(int pos) {
+		if (!regionMatches(pos, "url(")) {
+			return false;
+		}
+
+		pos = skipWhitespace(pos + 4);
+		if (pos < css.length() && (css.charAt(pos) == '"' || css.charAt(pos) == '\'')) {
+			pos++;
+		}
+
+		return regionMatches(pos, "data:");
+	}
+
+	private int skipWhitespace(int pos) {
+		while (pos < css.length() && isWhitespace(css.charAt(pos))) {
+			pos++;
+		}
+
+		return pos;
+	}
+
+	/**
+	 * Case insensitive comparison with a lower case string, limited to US-ASCII
+	 * like the (?i) flag of regular expressions.
+	 */
+	private boolean regionMatches(int pos, String lowerCase) {
+		if (pos + lowerCase.length() > css.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < lowerCase.length(); i++) {
+			if (toLowerCase(css.charAt(pos + i)) != lowerCase.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Matches the regex <code>(?i)progid:DXImageTransform.Microsoft.Matrix</code>
+	 * where a dot is any character except line terminators.
+	 */
+	private boolean matchesProgidMatrix(int pos) {
+		if (pos + PROGID_MATRIX.length() > css.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < PROGID_MATRIX.length(); i++) {
+			char expected = PROGID_MATRIX.charAt(i);
+			char c = css.charAt(pos + i);
+			if (expected == '.') {
+				if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+					return false;
+				}
+			} else if (toLowerCase(c) != toLowerCase(expected)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static boolean isHexDigit(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+}
@@ -24,6 +24,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.nio.charset.Charset;
@@ -36,9 +38,12 @@ import org.codehaus.plexus.util.StringUtils;
 import org.primefaces.extensions.optimizerplugin.replacer.CSSRelativeURLReplacingReader;
 import org.primefaces.extensions.optimizerplugin.replacer.DataUriTokenResolver;
 import org.primefaces.extensions.optimizerplugin.replacer.FixedMarkerTokenReplacingReader;
+import org.primefaces.extensions.optimizerplugin.util.OptimizerEvents;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetAdapter;
 import org.primefaces.extensions.optimizerplugin.util.ResourcesSetCssAdapter;
+import org.primefaces.extensions.optimizerplugin.util.TimingReport.Phase;
 
+import com.google.common.io.CharStreams;
 import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
 
@@ -51,10 +56,14 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
 
     private static final String OPTIMIZED_FILE_EXTENSION = ".optcss";
 
+    private static final int LINE_BREAK_POS = 500;
+
     private static final String JSF_RESOURCE_DATA_URI_START_MARKER = "#{resource[";
 
     private static final String JSF_RESOURCE_DATA_URI_END_MARKER = "]}";
 
+    private static final String EVENT_TYPE = "CSS";
+
     public YuiCompressorOptimizer(Log log) {
         super(log);
     }
@@ -71,8 +80,12 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
                 for (File file : rsa.getFiles()) {
                     log.info("Optimize CSS file " + file.getName() + " ...");
 
+                    OptimizerEvents.FileOptimized event = new OptimizerEvents.FileOptimized();
+                    event.begin();
+
                     // statistic
-                    addToOriginalSize(file);
+                    long start = System.nanoTime();
+                    long size = addToOriginalSize(file);
 
                     in = getReader(rsa, file);
 
@@ -84,12 +97,17 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
                         out = new OutputStreamWriter(new FileOutputStream(outputFile), rsa.getEncoding());
 
                         // compress and write compressed content into the new file
-                        CssCompressor compressor = new CssCompressor(in);
-                        compressor.compress(out, 500);
+                        boolean cached = compress(rsa, in, out, getExpectedLength(file));
                         closeStreams(in, out);
+                        recordTiming(Phase.CSS_COMPRESSION, file, start, size);
+                        commitFileEvent(event, file, EVENT_TYPE, size, outputFile, cached);
 
                         // statistic
                         addToOptimizedSize(outputFile);
+
+                        if (rsa.isGzip()) {
+                            precompress(outputFile);
+                        }
                     }
                     else {
                         // path of temp. file
@@ -101,21 +119,29 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
                         out = new OutputStreamWriter(new FileOutputStream(outputFile), rsa.getEncoding());
 
                         // compress and write compressed content into the new file
-                        CssCompressor compressor = new CssCompressor(in);
-                        compressor.compress(out, 500);
+                        boolean cached = compress(rsa, in, out, getExpectedLength(file));
                         closeStreams(in, out);
+                        recordTiming(Phase.CSS_COMPRESSION, file, start, size);
 
                         // rename the new file (overwrite the original file)
                         FileUtils.rename(outputFile, file);
+                        commitFileEvent(event, file, EVENT_TYPE, size, file, cached);
 
                         // statistic
                         addToOptimizedSize(file);
+
+                        if (rsa.isGzip()) {
+                            precompress(file);
+                        }
                     }
                 }
             }
             else if (rsa.getAggregation().getOutputFile() != null) {
                 // aggregation to one output file
+                OptimizerEvents.AggregationBuilt event = new OptimizerEvents.AggregationBuilt();
+                event.begin();
                 File outputFile;
+                long originalSize = 0;
                 Charset cset = Charset.forName(rsa.getEncoding());
 
                 if (!rsa.getAggregation().isWithoutCompress()) {
@@ -127,17 +153,19 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
                         log.info("Optimize CSS file " + file.getName() + " ...");
 
                         // statistic
-                        addToOriginalSize(file);
+                        long start = System.nanoTime();
+                        long size = addToOriginalSize(file);
+                        originalSize += size;
 
                         // create reader for the current file
                         in = getReader(rsa, file);
 
                         // compress and write compressed content into the output stream
-                        CssCompressor compressor = new CssCompressor(in);
-                        compressor.compress(osw, 500);
+                        compress(rsa, in, osw, getExpectedLength(file));
 
                         // close stream
                         closeStream(in);
+                        recordTiming(Phase.CSS_COMPRESSION, file, start, size);
                     }
 
                     // close stream
@@ -145,7 +173,7 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
 
                     if (rsa.getAggregation().getPrependedFile() != null) {
                         // statistic
-                        addToOriginalSize(rsa.getAggregation().getPrependedFile());
+                        originalSize += addToOriginalSize(rsa.getAggregation().getPrependedFile());
                     }
 
                     // get right output file
@@ -169,8 +197,8 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
                     outputFile = aggregateFiles(rsa, cset, false);
 
                     // statistic
-                    long size = addToOriginalSize(outputFile);
-                    addToOptimizedSize(size);
+                    originalSize = addToOriginalSize(outputFile);
+                    addToOptimizedSize(originalSize);
                 }
 
                 // delete single files if necessary
@@ -179,6 +207,11 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
 
                 // rename aggregated file if necessary
                 renameOutputFileIfNecessary(rsa, outputFile);
+                commitAggregationEvent(event, rsa, EVENT_TYPE, originalSize);
+
+                if (rsa.isGzip()) {
+                    precompress(rsa.getAggregation().getOutputFile());
+                }
             }
             else {
                 // should not happen
@@ -193,6 +226,49 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
         }
     }
 
+    /**
+     * Compresses the content of the given reader. If the result cache is enabled, the content after the Data URI
+     * replacement is used as the cache key, so that changed images invalidate the cached result too.
+     *
+     * @return true if the result was taken from the cache
+     */
+    protected boolean compress(ResourcesSetCssAdapter rsa, Reader in, Writer out, int expectedLength)
+                throws IOException {
+        if (resultCache == null) {
+            CssCompressor compressor = new CssCompressor(in, rsa.getCssEngine(), expectedLength);
+            compressor.compress(out, LINE_BREAK_POS);
+            return false;
+        }
+
+        String content = CharStreams.toString(in);
+        String options = "yui:" + LINE_BREAK_POS + ':' + rsa.getEncoding() + ':'
+                    + (rsa.getProjectDataUriTokenResolver() != null);
+        String cacheKey = resultCache.computeKey(options, content);
+        Charset cset = Charset.forName(rsa.getEncoding());
+
+        String compressed = getCachedContent(cacheKey, cset);
+        boolean cached = compressed != null;
+        if (!cached) {
+            StringWriter writer = new StringWriter(content.length());
+            CssCompressor compressor = new CssCompressor(new StringReader(content), rsa.getCssEngine(),
+                        content.length());
+            compressor.compress(writer, LINE_BREAK_POS);
+            compressed = writer.toString();
+            putCachedContent(cacheKey, compressed, cset);
+        }
+
+        out.write(compressed);
+        return cached;
+    }
+
+    /**
+     * The file length in bytes is an upper bound of the number of chars for the usual encodings, Data URIs let the
+     * buffer grow as needed.
+     */
+    private static int getExpectedLength(File file) {
+        return (int) Math.min(file.length(), Integer.MAX_VALUE - 8);
+    }
+
     @Override
     protected Reader getReader(ResourcesSetAdapter rsAdapter, File file)
                 throws FileNotFoundException, UnsupportedEncodingException {
@@ -202,18 +278,25 @@ public class YuiCompressorOptimizer extends AbstractOptimizer {
 
         // only use Data URI's if toke resolver is set
         if (rsa.getProjectDataUriTokenResolver() != null) {
-            reader = new FixedMarkerTokenReplacingReader(log, rsa.getProjectDataUriTokenResolver(), reader,
+            DataUriTokenResolver projectResolver = rsa.getProjectDataUriTokenResolver().forCssFile(file);
+            reader = new FixedMarkerTokenReplacingReader(log, projectResolver, reader,
                     JSF_RESOURCE_DATA_URI_START_MARKER, JSF_RESOURCE_DATA_URI_END_MARKER);
 
             // this needs a resolver relative to current CSS file directory
             File fileParentDir = new File(file.getParent());
-            DataUriTokenResolver fileRelativeResolver = new DataUriTokenResolver(log, List.of(fileParentDir));
+            DataUriTokenResolver fileRelativeResolver = projectResolver.forImagesDir(log, List.of(fileParentDir));
             reader = new CSSRelativeURLReplacingReader(log, fileRelativeResolver, reader);
         }
 
         return reader;
     }
 
+    @Override
+    protected boolean isContentReplaced(ResourcesSetAdapter rsAdapter) {
+        // Data URIs are resolved while reading
+        return ((ResourcesSetCssAdapter) rsAdapter).getProjectDataUriTokenResolver() != null;
+    }
+
     protected void closeStreams(Reader in, Writer out) {
         closeStream(in);
         closeStream(out);
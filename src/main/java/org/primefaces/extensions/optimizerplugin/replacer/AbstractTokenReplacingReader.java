@@ -21,105 +21,169 @@ package org.primefaces.extensions.optimizerplugin.replacer;
 import org.apache.maven.plugin.logging.Log;
 
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
 import java.nio.CharBuffer;
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
  * Reader for inplace token replacements. It does not use as much memory as the String.replace() method. Got the idea from
  * <a href="http://tutorials.jenkov.com/java-howto/replace-strings-in-streams-arrays-files.html">...</a>
+ * <p>
+ * The source is read in chunks. Subclasses search a chunk for the next possible token start, the chars before it are
+ * copied in bulk, and only a possible token start is examined char by char.
  *
  * @author Oleg Varaksin (ovaraksin@googlemail.com)
  */
 public abstract class AbstractTokenReplacingReader extends Reader {
 
+    private static final int BUFFER_SIZE = 8192;
+
     protected final Log log;
 
-    protected final PushbackReader pushbackReader;
+    private final Reader source;
     private final TokenResolver tokenResolver;
-    protected final StringBuilder tokenBuffer = new StringBuilder();
-    protected String resolvedToken = null;
-    protected int resolvedTokenIndex = 0;
+    private final char[] singleChar = new char[1];
+    private char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private boolean endOfSource = false;
+    private String resolvedToken = null;
+    private int resolvedTokenIndex = 0;
 
-    protected AbstractTokenReplacingReader(final Log log, final TokenResolver resolver, final Reader source,
-            final int pushbackBufferSize) {
+    protected AbstractTokenReplacingReader(final Log log, final TokenResolver resolver, final Reader source) {
         this.log = log;
-        pushbackReader = new PushbackReader(source, pushbackBufferSize);
+        this.source = Objects.requireNonNull(source, "Source is null");
         tokenResolver = Objects.requireNonNull(resolver, "Token resolver is null");
     }
 
     /**
-     * Try to match token start at the reader's current position. Unread what was read if failed to match.
+     * Searches the given chunk for the first char a token could start with.
      *
-     * @return true if matched token start
-     * @throws IOException
+     * @param chars buffer with the chunk
+     * @param from index of the first char of the chunk
+     * @param to index after the last char of the chunk
+     * @return index of the possible token start or -1 if there is none in the chunk
      */
-    protected abstract boolean matchTokenStart() throws IOException;
+    protected abstract int findTokenStart(char[] chars, int from, int to);
 
     /**
-     * Find (sub)token to be replaced and put it into {@link #tokenBuffer}. Set {@link #resolvedToken} to everything
-     * that was read on this iteration if not found.
+     * Tries to match a token at the current position, see {@link #peek(int)}. If matched, {@link #consume(int)}
+     * the token and return its replacement, which is the resolved token or what was read if it could not be resolved.
      *
-     * @return true if found token to resolve with {@link #tokenResolver}
+     * @return replacement of the token or null if no token starts at the current position
      * @throws IOException
      */
-    protected abstract boolean findToken() throws IOException;
+    protected abstract String replaceToken() throws IOException;
+
+    protected String resolveToken(final String token) throws IOException {
+        return tokenResolver.resolveToken(token);
+    }
 
     /**
-     * If {@link #tokenResolver} successfully resolved the token then this is where you could wrap
-     * the result in {@link #resolvedToken} into something if necessary.
-     * If failed to resolve (resolvedToken == null) then set {@link #resolvedToken} to everything that was read on this
-     * iteration.
+     * @param offset offset from the current position
+     * @return char at the given offset or -1 if the source ends before
+     * @throws IOException
      */
-    protected abstract void handleResolverResult();
+    protected int peek(final int offset) throws IOException {
+        return fill(offset + 1) ? buffer[position + offset] : -1;
+    }
 
-    @Override
-    public final int read() throws IOException {
-        // return chars from a previously found/resolved token
-        if (resolvedToken != null) {
-            if (resolvedTokenIndex < resolvedToken.length()) {
-                return resolvedToken.charAt(resolvedTokenIndex++);
-            }
-            else {
-                resolvedToken = null;
-                resolvedTokenIndex = 0;
-            }
+    /**
+     * @param offset offset from the current position
+     * @param str expected string
+     * @return true if the given string is found at the given offset
+     * @throws IOException
+     */
+    protected boolean startsWith(final int offset, final String str) throws IOException {
+        if (!fill(offset + str.length())) {
+            return false;
         }
 
-        if (!matchTokenStart()) {
-            return pushbackReader.read();
+        for (int i = 0; i < str.length(); i++) {
+            if (buffer[position + offset + i] != str.charAt(i)) {
+                return false;
+            }
         }
 
-        if (findToken()) {
-            // try to resolve token
-            resolvedToken = tokenResolver.resolveToken(tokenBuffer.toString());
-            handleResolverResult();
+        return true;
+    }
+
+    /**
+     * @param str string to search for
+     * @param fromOffset offset from the current position to start the search at
+     * @return offset of the given string or -1 if the source ends before
+     * @throws IOException
+     */
+    protected int indexOf(final String str, final int fromOffset) throws IOException {
+        int offset = fromOffset;
+        while (fill(offset + str.length())) {
+            if (startsWith(offset, str)) {
+                return offset;
+            }
+
+            offset++;
         }
 
-        return resolvedToken.charAt(resolvedTokenIndex++);
+        return -1;
     }
 
-    protected int readChars(final char[] tmpChars) throws IOException {
-        int countValidChars = -1;
-        final int length = tmpChars.length;
-        int data = pushbackReader.read();
+    /**
+     * @param count maximum number of chars
+     * @return number of chars available from the current position, but not more than the given count
+     * @throws IOException
+     */
+    protected int available(final int count) throws IOException {
+        fill(count);
+        return Math.min(count, limit - position);
+    }
+
+    protected String substring(final int fromOffset, final int toOffset) {
+        return new String(buffer, position + fromOffset, toOffset - fromOffset);
+    }
+
+    /**
+     * Moves the current position past chars which were peeked.
+     *
+     * @param count number of chars
+     */
+    protected void consume(final int count) {
+        position += count;
+    }
 
-        for (int i = 0; i < length; i++) {
-            if (data != -1) {
-                tmpChars[i] = (char) data;
-                countValidChars = i + 1;
-                if (i + 1 < length) {
-                    data = pushbackReader.read();
+    /**
+     * Ensures that the given number of chars is buffered from the current position on.
+     *
+     * @return false if the source ends before
+     */
+    private boolean fill(final int count) throws IOException {
+        while (limit - position < count && !endOfSource) {
+            if (limit == buffer.length) {
+                if (position > 0) {
+                    System.arraycopy(buffer, position, buffer, 0, limit - position);
+                    limit -= position;
+                    position = 0;
+                }
+                else {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
                 }
             }
+
+            int charsRead = source.read(buffer, limit, buffer.length - limit);
+            if (charsRead == -1) {
+                endOfSource = true;
+            }
             else {
-                // reset to java default value for char
-                tmpChars[i] = '\u0000';
+                limit += charsRead;
             }
         }
 
-        return countValidChars;
+        return limit - position >= count;
+    }
+
+    @Override
+    public final int read() throws IOException {
+        return read(singleChar, 0, 1) == -1 ? -1 : singleChar[0];
     }
 
     @Override
@@ -130,34 +194,54 @@ public abstract class AbstractTokenReplacingReader extends Reader {
     @Override
     public final int read(final char[] cbuf, final int off, final int len) throws IOException {
         int charsRead = 0;
-        for (int i = 0; i < len; i++) {
-            final int nextChar = read();
-            if (nextChar == -1) {
-                charsRead = i;
-                if (charsRead == 0) {
-                    charsRead = -1;
+
+        while (charsRead < len) {
+            // return chars from a previously found/resolved token
+            if (resolvedToken != null) {
+                int count = Math.min(resolvedToken.length() - resolvedTokenIndex, len - charsRead);
+                resolvedToken.getChars(resolvedTokenIndex, resolvedTokenIndex + count, cbuf, off + charsRead);
+                resolvedTokenIndex += count;
+                charsRead += count;
+                if (resolvedTokenIndex == resolvedToken.length()) {
+                    resolvedToken = null;
+                    resolvedTokenIndex = 0;
                 }
 
+                continue;
+            }
+
+            if (position == limit && !fill(1)) {
                 break;
             }
-            else {
-                charsRead = i + 1;
+
+            // copy all chars up to the next possible token start
+            int tokenStart = findTokenStart(buffer, position, limit);
+            int count = Math.min((tokenStart == -1 ? limit : tokenStart) - position, len - charsRead);
+            if (count > 0) {
+                System.arraycopy(buffer, position, cbuf, off + charsRead, count);
+                position += count;
+                charsRead += count;
+                continue;
             }
 
-            cbuf[off + i] = (char) nextChar;
+            resolvedToken = replaceToken();
+            if (resolvedToken == null) {
+                // no token, pass the char through
+                cbuf[off + charsRead++] = buffer[position++];
+            }
         }
 
-        return charsRead;
+        return charsRead == 0 && len > 0 ? -1 : charsRead;
     }
 
     @Override
     public final void close() throws IOException {
-        pushbackReader.close();
+        source.close();
     }
 
     @Override
     public final boolean ready() throws IOException {
-        return pushbackReader.ready();
+        return resolvedToken != null || position < limit || source.ready();
     }
 
     @Override
@@ -18,14 +18,11 @@
 
 package org.primefaces.extensions.optimizerplugin.replacer;
 
-import com.google.common.primitives.Chars;
 import org.apache.maven.plugin.logging.Log;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Reader for replacing relative URLs in CSS url function calls.
@@ -34,53 +31,52 @@ import java.util.stream.Collectors;
  */
 public class CSSRelativeURLReplacingReader extends AbstractTokenReplacingReader {
 
-    private static final char[] URL_FUNC_CALL_START = "url(".toCharArray();
-    private static final int URL_FUNC_CALL_START_LEN = URL_FUNC_CALL_START.length;
+    private static final String URL_FUNC_CALL_START = "url(";
+    private static final int URL_FUNC_CALL_START_LEN = URL_FUNC_CALL_START.length();
 
-    private static final List<char[]> IGNORED_ARGUMENT_PREFIXES = List.of("https:", "http:", "blob:", "#", "data:")
-            .stream().map(String::toCharArray).collect(Collectors.toUnmodifiableList());
-    private static final char[] TRIM_ARGUMENTS_CHARS = "\t'\"".toCharArray();
+    private static final List<String> IGNORED_ARGUMENT_PREFIXES = List.of("https:", "http:", "blob:", "#", "data:");
+    private static final String TRIM_ARGUMENTS_CHARS = "\t'\"";
 
     // just need enough of a buffer to check the beginning of a url function call (with some leeway for whitespace)
-    private final char[] startChars = new char[20];
-    private int argStart;
+    private static final int START_CHARS_LEN = 20;
 
     public CSSRelativeURLReplacingReader(final Log log, final TokenResolver tokenResolver, final Reader source) {
-        super(log, tokenResolver, source, 20);
+        super(log, tokenResolver, source);
     }
 
     @Override
-    protected boolean matchTokenStart() throws IOException {
-        int countValidChars = readChars(startChars);
-        if (countValidChars == -1) {
-            return false;
+    protected int findTokenStart(final char[] chars, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            // the char before "url("
+            // (what's with the quote? it's because of this: `li::after { content: " - "url(star.gif); }`)
+            char c = chars[i];
+            if (c == ' ' || c == '\t' || c == ':' || c == '"') {
+                return i;
+            }
         }
 
-        // first check the char before "url("
-        // (what's with the quote? it's because of this: `li::after { content: " - "url(star.gif); }`)
-        if (!(startChars[0] == ' ' || startChars[0] == '\t' || startChars[0] == ':' || startChars[0] == '"')) {
-            pushbackReader.unread(startChars, 0, countValidChars);
-            return false;
-        }
+        return -1;
+    }
 
+    @Override
+    protected String replaceToken() throws IOException {
         // now "url(" itself (no, it can't have a space before the parenthesis)
-        if (!Arrays.equals(URL_FUNC_CALL_START, 0, URL_FUNC_CALL_START_LEN,
-                startChars, 1, URL_FUNC_CALL_START_LEN + 1)) {
-            pushbackReader.unread(startChars, 0, countValidChars);
-            return false;
+        if (!startsWith(1, URL_FUNC_CALL_START)) {
+            return null;
         }
 
+        int startCharsLen = available(START_CHARS_LEN);
+        String startChars = substring(0, startCharsLen);
         if (log.isDebugEnabled()) {
-            log.debug("Found CSS url function call: " + String.valueOf(startChars));
+            log.debug("Found CSS url function call: " + startChars);
         }
 
         // skip quotes/spaces to find argument start
-        argStart = URL_FUNC_CALL_START_LEN + 1;
-        while (Chars.contains(TRIM_ARGUMENTS_CHARS, startChars[argStart])) {
+        int argStart = URL_FUNC_CALL_START_LEN + 1;
+        while (argStart < startCharsLen && TRIM_ARGUMENTS_CHARS.indexOf(startChars.charAt(argStart)) >= 0) {
             ++argStart;
-            if (argStart == startChars.length) {
-                pushbackReader.unread(startChars, 0, countValidChars);
-                return false;
+            if (argStart == START_CHARS_LEN) {
+                return null;
             }
         }
 
@@ -92,76 +88,56 @@ public class CSSRelativeURLReplacingReader extends AbstractTokenReplacingReader
         // ("#" also skips JSF resource URLs which is necessary);
         // - absolute URLs too, because trying to fetch an internet or even a LAN resource is definitely not something
         // that should'be done quietly by default
-        for (char[] prefix : IGNORED_ARGUMENT_PREFIXES) {
-            if (argStart + prefix.length <= startChars.length &&
-                    Arrays.equals(prefix, 0, prefix.length, startChars,
-                            argStart, argStart + prefix.length)) {
+        for (String prefix : IGNORED_ARGUMENT_PREFIXES) {
+            if (startChars.startsWith(prefix, argStart)) {
                 if (log.isDebugEnabled()) {
-                    log.debug("Matched ignored argument prefix: " + String.valueOf(prefix));
+                    log.debug("Matched ignored argument prefix: " + prefix);
                 }
-                pushbackReader.unread(startChars, 0, countValidChars);
-                return false;
+                return null;
             }
         }
         // additional optimistic check for an SVG fragment, e.g. url(my-file.svg#svg-blur) - in case it happened to fit
         // into the buffer
-        if (Chars.contains(startChars, '#')) {
+        if (startChars.indexOf('#') >= 0) {
             if (log.isDebugEnabled()) {
                 log.debug("Matched ignored SVG fragment argument");
             }
-            pushbackReader.unread(startChars, 0, countValidChars);
-            return false;
+            return null;
         }
 
-        // unread to the beginning of the argument in preparation for findToken
-        pushbackReader.unread(startChars, argStart, startChars.length - argStart);
-        return true;
-    }
-
-    @Override
-    protected boolean findToken() throws IOException {
-        boolean cancel = false;
-        tokenBuffer.setLength(0);
-
-        int ch = pushbackReader.read();
         // technically there could be parentheses in a quoted URL, or escaped parentheses in unquoted, but let's ignore
         // that for now
+        int argEnd = argStart;
+        int ch = peek(argEnd);
         while (ch != ')') {
             if (ch == -1 || ch == '#') {
-                // finished reading the file or this turned out to be an SVG fragment
-                cancel = true;
-                break;
+                // finished reading the file or this turned out to be an SVG fragment, restore what was read exactly
+                String read = substring(0, argEnd);
+                consume(argEnd);
+                return read;
             }
-            tokenBuffer.append((char) ch);
-            ch = pushbackReader.read();
+            ch = peek(++argEnd);
         }
 
-        if (cancel) {
-            resolvedToken = String.valueOf(startChars, 0, argStart) + tokenBuffer;
-            return false;
-        }
-        else {
-            // we trimmed argument start above (see TRIM_ARGUMENTS_CHARS), should we trim the end too for symmetry? meh,
-            // DataUriTokenResolver would handle it, it only looks weird in debug logs, just a cosmetic issue
-            if (log.isDebugEnabled()) {
-                log.debug("Extracted CSS url() relative URL argument to resolve: " + tokenBuffer);
-            }
-            return true;
+        // we trimmed argument start above (see TRIM_ARGUMENTS_CHARS), should we trim the end too for symmetry? meh,
+        // DataUriTokenResolver would handle it, it only looks weird in debug logs, just a cosmetic issue
+        String token = substring(argStart, argEnd);
+        if (log.isDebugEnabled()) {
+            log.debug("Extracted CSS url() relative URL argument to resolve: " + token);
         }
-    }
 
-    @Override
-    protected void handleResolverResult() {
+        String resolvedToken = resolveToken(token);
         if (resolvedToken != null) {
             // the argument-token was resolved - we need to wrap it back into "*url(" (exactly as it was) and ")"
-            resolvedToken = String.valueOf(startChars, 0, URL_FUNC_CALL_START_LEN + 1) + resolvedToken
-                    + ')';
+            resolvedToken = startChars.substring(0, URL_FUNC_CALL_START_LEN + 1) + resolvedToken + ')';
         }
         else {
             // the argument-token was not resolved - restore what was read exactly
-            resolvedToken = String.valueOf(startChars, 0, argStart) + tokenBuffer + ')';
+            resolvedToken = substring(0, argEnd + 1);
         }
-    }
 
+        consume(argEnd + 1);
+        return resolvedToken;
+    }
 
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.replacer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of Data URIs shared by all {@link DataUriTokenResolver}s of a build, so that an image referenced by many
+ * stylesheets is read and encoded only once. Data URIs are keyed by the canonical path and the last modification time
+ * of the image and evicted in least recently used order once their total length exceeds the maximum size. Tokens which
+ * could not be resolved are cached too, so that the image directories are not searched again.
+ */
+public class DataUriCache {
+
+    /**
+     * Default maximum total length of all cached Data URIs in chars.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final int MAX_UNRESOLVED_ENTRIES = 10000;
+
+    private final long maxSize;
+
+    private long size = 0;
+
+    private final Map<String, String> dataUris = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, String> unresolved = new LinkedHashMap<String, String>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+            return size() > MAX_UNRESOLVED_ENTRIES;
+        }
+    };
+
+    public DataUriCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public DataUriCache(final long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param imageFile existing image file
+     * @return key of the Data URI of the given image in its current version
+     * @throws IOException if the canonical path could not be determined
+     */
+    public static String computeKey(final File imageFile) throws IOException {
+        return imageFile.getCanonicalPath() + '\n' + imageFile.lastModified() + '\n' + imageFile.length();
+    }
+
+    /**
+     * @param key key computed by {@link #computeKey(File)}
+     * @return cached Data URI or null if there is no entry for the key
+     */
+    public synchronized String getDataUri(final String key) {
+        return dataUris.get(key);
+    }
+
+    /**
+     * Stores a Data URI and evicts the least recently used ones if the maximum size is exceeded. A single Data URI
+     * larger than the maximum size is not cached at all.
+     *
+     * @param key key computed by {@link #computeKey(File)}
+     * @param dataUri encoded image
+     */
+    public synchronized void putDataUri(final String key, final String dataUri) {
+        if (dataUri.length() > maxSize) {
+            return;
+        }
+
+        String previous = dataUris.put(key, dataUri);
+        size += dataUri.length() - (previous != null ? previous.length() : 0);
+
+        Iterator<String> iterator = dataUris.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().length();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @param key directories and path of the token
+     * @return message why the token could not be resolved or null if there is no entry for the key
+     */
+    public synchronized String getUnresolved(final String key) {
+        return unresolved.get(key);
+    }
+
+    /**
+     * @param key directories and path of the token
+     * @param message message why the token could not be resolved
+     */
+    public synchronized void putUnresolved(final String key, final String message) {
+        unresolved.put(key, message);
+    }
+}
@@ -20,16 +20,19 @@ package org.primefaces.extensions.optimizerplugin.replacer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
-import com.google.common.io.Files;
 import org.apache.maven.plugin.logging.Log;
-import org.codehaus.plexus.util.Base64;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
+import org.primefaces.extensions.optimizerplugin.util.OptimizerEvents;
+import org.primefaces.extensions.optimizerplugin.util.TimingReport;
 
 /**
  * Implementation of the interface {@link TokenResolver} to replace JSF based image references #{resource[...]} in CSS files by
@@ -44,11 +47,22 @@ public class DataUriTokenResolver implements TokenResolver {
      */
     public final List<File> imagesDir;
     private final Log log;
+    private final DataUriCache cache;
+    private final long maxSize;
+    private final Map<String, Long> maxSizes;
+    private TimingReport timingReport;
+    private Map<File, Set<File>> dependencies;
+    private File cssFile;
 
     private static final Pattern PATTERN = Pattern.compile("[\\s'\":/\\\\]+");
 
     private static final Map<String, String> supportedTypes = new HashMap<>();
 
+    private static final char[] BASE64_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    private static final int BUFFER_SIZE = 3 * 1024;
+
     static {
         supportedTypes.put("gif", "image/gif");
         supportedTypes.put("jpg", "image/jpeg");
@@ -59,8 +73,66 @@ public class DataUriTokenResolver implements TokenResolver {
     }
 
     public DataUriTokenResolver(final Log log, final List<File> imagesDir) {
+        this(log, imagesDir, new DataUriCache(), 0, Map.of());
+    }
+
+    /**
+     * @param log logger
+     * @param imagesDir directories where to look for images from
+     * @param cache cache of Data URIs, usually shared by all resolvers of a build
+     * @param maxSize maximum size in bytes of images to convert, 0 or less for no limit
+     * @param maxSizes maximum sizes by file extension overriding the maximum size
+     */
+    public DataUriTokenResolver(final Log log, final List<File> imagesDir, final DataUriCache cache,
+            final long maxSize, final Map<String, Long> maxSizes) {
         this.imagesDir = imagesDir;
         this.log = log;
+        this.cache = cache;
+        this.maxSize = maxSize;
+        this.maxSizes = maxSizes;
+    }
+
+    /**
+     * @param log logger
+     * @param imagesDir directories where to look for images from
+     * @return resolver for other directories sharing the cache and the size limits of this one
+     */
+    public DataUriTokenResolver forImagesDir(final Log log, final List<File> imagesDir) {
+        final DataUriTokenResolver resolver = new DataUriTokenResolver(log, imagesDir, cache, maxSize, maxSizes);
+        resolver.setTimingReport(timingReport);
+        resolver.dependencies = dependencies;
+        resolver.cssFile = cssFile;
+        return resolver;
+    }
+
+    /**
+     * @param cssFile CSS file whose tokens are resolved
+     * @return resolver recording the image files the given CSS file depends on, this one if no dependencies are
+     *         recorded
+     */
+    public DataUriTokenResolver forCssFile(final File cssFile) {
+        if (dependencies == null) {
+            return this;
+        }
+
+        final DataUriTokenResolver resolver = forImagesDir(log, imagesDir);
+        resolver.cssFile = cssFile;
+        return resolver;
+    }
+
+    /**
+     * @param dependencies concurrent map receiving the image files every CSS file depends on, including images
+     *            which don't exist (yet), null to record none
+     */
+    public void setDependencies(final Map<File, Set<File>> dependencies) {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @param timingReport report receiving the duration of every image encoding, null for none
+     */
+    public void setTimingReport(final TimingReport timingReport) {
+        this.timingReport = timingReport;
     }
 
     @Override public String resolveToken(final String token) throws IOException {
@@ -68,6 +140,9 @@ public class DataUriTokenResolver implements TokenResolver {
             return token;
         }
 
+        final OptimizerEvents.DataUriResolved event = new OptimizerEvents.DataUriResolved();
+        event.begin();
+
         if (log.isDebugEnabled()) {
             log.debug("Resolving resource " + token);
         }
@@ -98,6 +173,18 @@ public class DataUriTokenResolver implements TokenResolver {
             path = path.substring(0, path.length() - 1);
         }
 
+        if (dependencies != null && cssFile != null) {
+            addDependencies(path);
+        }
+
+        // tokens which could not be resolved before are not searched again
+        final String unresolvedKey = imagesDir + path;
+        final String unresolvedMessage = cache.getUnresolved(unresolvedKey);
+        if (unresolvedMessage != null) {
+            log.warn(unresolvedMessage);
+            return null;
+        }
+
         // build image full path and check if image exists and has supported mime-type
         boolean found = false;
         File imageFile = null;
@@ -126,18 +213,101 @@ public class DataUriTokenResolver implements TokenResolver {
         }
 
         if (!found) {
-            log.warn("Failed to resolve resource: " + token
-                    + (imagesDir.size() == 1 ? (" at " + imageFile) : ""));
+            final String message = "Failed to resolve resource: " + token
+                    + (imagesDir.size() == 1 ? (" at " + imageFile) : "");
+            cache.putUnresolved(unresolvedKey, message);
+            log.warn(message);
+            return null;
+        }
+
+        // check the size before reading, large images are better kept as references
+        final long limit = maxSizes.getOrDefault(extension, maxSize);
+        final long length = imageFile.length();
+        if (limit > 0 && length > limit) {
+            log.info("Skipping Data URI conversion for: " + imageFile + " (" + length + " bytes exceed the limit of "
+                    + limit + " bytes)");
             return null;
         }
 
         log.info("Data URI conversion for: " + imageFile);
-        // generate dataURI
-        final byte[] bytes = Files.toByteArray(imageFile);
+        final String cacheKey = DataUriCache.computeKey(imageFile);
+        String dataUri = cache.getDataUri(cacheKey);
+        final boolean cached = dataUri != null;
+        if (!cached) {
+            // generate dataURI
+            final long start = System.nanoTime();
+            dataUri = encode(imageFile, length, supportedTypes.get(extension));
+            if (timingReport != null) {
+                timingReport.record(TimingReport.Phase.DATA_URI, imageFile, start, length);
+            }
+
+            cache.putDataUri(cacheKey, dataUri);
+        }
+
+        if (event.shouldCommit()) {
+            event.image = imageFile.getPath();
+            event.imageSize = length;
+            event.cached = cached;
+            event.commit();
+        }
 
-        return "data:" +
-                supportedTypes.get(extension) +
-                ";base64," +
-                new String(Base64.encodeBase64(bytes));
+        return dataUri;
+    }
+
+    /**
+     * Records the candidate image files of a path in all directories, so that adding, changing or removing any of them
+     * makes the CSS file stale in incremental builds.
+     */
+    private void addDependencies(final String path) throws IOException {
+        final Set<File> files = dependencies.computeIfAbsent(cssFile, key -> ConcurrentHashMap.newKeySet());
+        for (final File imageDir : imagesDir) {
+            if (imageDir.isDirectory()) {
+                files.add(new File(imageDir.getCanonicalPath() + path));
+            }
+        }
+    }
+
+    /**
+     * Streams the base64 encoded image into a buffer of the final size, without holding the whole image in memory.
+     */
+    private static String encode(final File imageFile, final long length, final String mimeType) throws IOException {
+        final String prefix = "data:" + mimeType + ";base64,";
+        final StringBuilder sb = new StringBuilder(
+                (int) Math.min(prefix.length() + (length + 2) / 3 * 4, Integer.MAX_VALUE - 8));
+        sb.append(prefix);
+
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int count = 0;
+        try (InputStream in = java.nio.file.Files.newInputStream(imageFile.toPath())) {
+            int read;
+            while ((read = in.read(buffer, count, buffer.length - count)) != -1) {
+                count += read;
+
+                // encode complete groups of three bytes and keep the rest for the next read
+                final int complete = count - count % 3;
+                appendBase64(sb, buffer, complete);
+                System.arraycopy(buffer, complete, buffer, 0, count - complete);
+                count -= complete;
+            }
+        }
+
+        appendBase64(sb, buffer, count);
+        return sb.toString();
+    }
+
+    private static void appendBase64(final StringBuilder sb, final byte[] bytes, final int length) {
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            final int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+            sb.append(BASE64_CHARS[bits >>> 18]).append(BASE64_CHARS[(bits >>> 12) & 0x3f])
+                    .append(BASE64_CHARS[(bits >>> 6) & 0x3f]).append(BASE64_CHARS[bits & 0x3f]);
+        }
+
+        if (i < length) {
+            // last group with padding
+            final int bits = (bytes[i] & 0xff) << 16 | (i + 1 < length ? (bytes[i + 1] & 0xff) << 8 : 0);
+            sb.append(BASE64_CHARS[bits >>> 18]).append(BASE64_CHARS[(bits >>> 12) & 0x3f])
+                    .append(i + 1 < length ? BASE64_CHARS[(bits >>> 6) & 0x3f] : '=').append('=');
+        }
     }
 }
\ No newline at end of file
@@ -22,7 +22,6 @@ import org.apache.maven.plugin.logging.Log;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.util.Arrays;
 
 /**
  * Finds and replaces tokens enclosed in known fixed length markers.
@@ -33,85 +32,57 @@ public class FixedMarkerTokenReplacingReader extends AbstractTokenReplacingReade
 
     private final String tokenStartMarker;
     private final String tokenEndMarker;
-    private final char[] tokenStartMarkerChars;
-    private final char[] tokenEndMarkerChars;
-    private final char[] tmpTokenStartMarkerChars;
-    private final char[] tmpTokenEndMarkerChars;
+    private final char tokenStartChar;
 
     public FixedMarkerTokenReplacingReader(final Log log, final TokenResolver resolver, final Reader source,
             final String tokenStartMarker, final String tokenEndMarker) {
-        super(log, resolver, source, Math.max(tokenStartMarker.length(), tokenEndMarker.length()));
+        super(log, resolver, source);
         this.tokenStartMarker = tokenStartMarker;
         this.tokenEndMarker = tokenEndMarker;
-        tokenStartMarkerChars = tokenStartMarker.toCharArray();
-        tokenEndMarkerChars = tokenEndMarker.toCharArray();
-        tmpTokenStartMarkerChars = new char[tokenStartMarker.length()];
-        tmpTokenEndMarkerChars = new char[tokenEndMarker.length()];
+        tokenStartChar = tokenStartMarker.charAt(0);
     }
 
     @Override
-    protected boolean matchTokenStart() throws IOException {
-        // read proper number of chars into a temp. char array in order to find token start marker
-        int countValidChars = readChars(tmpTokenStartMarkerChars);
-
-        if (Arrays.equals(tmpTokenStartMarkerChars, tokenStartMarkerChars)) {
-            return true;
-        }
-        else {
-            if (countValidChars > 0) {
-                pushbackReader.unread(tmpTokenStartMarkerChars, 0, countValidChars);
+    protected int findTokenStart(final char[] chars, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == tokenStartChar) {
+                return i;
             }
-            return false;
         }
+
+        return -1;
     }
 
     @Override
-    protected boolean findToken() throws IOException {
-        // found start of token, read proper number of chars into a temp. char array in order to find token end marker
-        boolean endOfSource = false;
-        tokenBuffer.setLength(0);
-        int countValidChars = readChars(tmpTokenEndMarkerChars);
-
-        while (!Arrays.equals(tmpTokenEndMarkerChars, tokenEndMarkerChars)) {
-            if (countValidChars == -1) {
-                // end of source and no token end marker was found
-                endOfSource = true;
-
-                break;
-            }
-
-            tokenBuffer.append(tmpTokenEndMarkerChars[0]);
-
-            pushbackReader.unread(tmpTokenEndMarkerChars, 0, countValidChars);
-            if (pushbackReader.read() == -1) {
-                // end of source and no token end marker was found
-                endOfSource = true;
-
-                break;
-            }
-
-            countValidChars = readChars(tmpTokenEndMarkerChars);
+    protected String replaceToken() throws IOException {
+        if (!startsWith(0, tokenStartMarker)) {
+            return null;
         }
 
-        if (endOfSource) {
-            resolvedToken = tokenStartMarker + tokenBuffer;
-            return false;
+        int tokenStart = tokenStartMarker.length();
+        int tokenEnd = indexOf(tokenEndMarker, tokenStart);
+        if (tokenEnd == -1) {
+            // end of source and no token end marker was found
+            int end = available(Integer.MAX_VALUE);
+            String read = substring(0, end);
+            consume(end);
+            return read;
         }
-        else {
-            if (log.isDebugEnabled()) {
-                log.debug("Extracted " + tokenStartMarker + tokenEndMarker + "-demarcated token to resolve: "
-                        + tokenBuffer);
-            }
-            return true;
+
+        String token = substring(tokenStart, tokenEnd);
+        if (log.isDebugEnabled()) {
+            log.debug("Extracted " + tokenStartMarker + tokenEndMarker + "-demarcated token to resolve: " + token);
         }
-    }
 
-    @Override
-    protected void handleResolverResult() {
+        int end = tokenEnd + tokenEndMarker.length();
+        String resolvedToken = resolveToken(token);
         if (resolvedToken == null) {
             // token was not resolved
-            resolvedToken = tokenStartMarker + tokenBuffer + tokenEndMarker;
+            resolvedToken = substring(0, end);
         }
+
+        consume(end);
+        return resolvedToken;
     }
 
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Log collecting messages of a task running on a worker thread. Collected messages are written to the real
+ * Maven log via {@link #flushTo(Log)} so that the build output keeps the order of the configuration.
+ */
+public class BufferedLog implements Log {
+
+    private enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final class Entry {
+
+        private final Level level;
+
+        private final CharSequence content;
+
+        private final Throwable error;
+
+        private Entry(Level level, CharSequence content, Throwable error) {
+            this.level = level;
+            this.content = content;
+            this.error = error;
+        }
+    }
+
+    private final boolean debugEnabled;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public BufferedLog(Log target) {
+        this.debugEnabled = target.isDebugEnabled();
+    }
+
+    /**
+     * Writes all collected messages to the given log and clears this buffer.
+     *
+     * @param target log to write to
+     */
+    public synchronized void flushTo(Log target) {
+        for (Entry entry : entries) {
+            switch (entry.level) {
+                case DEBUG:
+                    target.debug(entry.content, entry.error);
+                    break;
+                case INFO:
+                    target.info(entry.content, entry.error);
+                    break;
+                case WARN:
+                    target.warn(entry.content, entry.error);
+                    break;
+                default:
+                    target.error(entry.content, entry.error);
+            }
+        }
+
+        entries.clear();
+    }
+
+    private synchronized void add(Level level, CharSequence content, Throwable error) {
+        entries.add(new Entry(level, content, error));
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return debugEnabled;
+    }
+
+    @Override
+    public void debug(CharSequence content) {
+        if (debugEnabled) {
+            add(Level.DEBUG, content, null);
+        }
+    }
+
+    @Override
+    public void debug(CharSequence content, Throwable error) {
+        if (debugEnabled) {
+            add(Level.DEBUG, content, error);
+        }
+    }
+
+    @Override
+    public void debug(Throwable error) {
+        if (debugEnabled) {
+            add(Level.DEBUG, null, error);
+        }
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return true;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+        add(Level.INFO, content, null);
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+        add(Level.INFO, content, error);
+    }
+
+    @Override
+    public void info(Throwable error) {
+        add(Level.INFO, null, error);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return true;
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+        add(Level.WARN, content, null);
+    }
+
+    @Override
+    public void warn(CharSequence content, Throwable error) {
+        add(Level.WARN, content, error);
+    }
+
+    @Override
+    public void warn(Throwable error) {
+        add(Level.WARN, null, error);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return true;
+    }
+
+    @Override
+    public void error(CharSequence content) {
+        add(Level.ERROR, content, null);
+    }
+
+    @Override
+    public void error(CharSequence content, Throwable error) {
+        add(Level.ERROR, content, error);
+    }
+
+    @Override
+    public void error(Throwable error) {
+        add(Level.ERROR, null, error);
+    }
+}
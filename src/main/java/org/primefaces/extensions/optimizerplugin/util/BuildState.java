@@ -0,0 +1,200 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * State of the last build used for the stale detection of incremental builds. Every processed unit records a
+ * fingerprint of its input and output files (path, length and last modification time) taken after the optimization.
+ * A unit whose current fingerprint equals the recorded one is up to date. Entries not touched by the current build
+ * are dropped on {@link #save()}.
+ * <p>
+ * Files a unit depends on but which are only known after its optimization, like the images inlined as Data URIs, are
+ * recorded as dependencies of the unit, so that the next build can include them in the fingerprint.
+ */
+public class BuildState {
+
+    private static final String DEPENDENCIES_SUFFIX = "|dependencies";
+
+    private final File stateFile;
+
+    private final Properties previous = new Properties();
+
+    private final Properties current = new Properties();
+
+    public BuildState(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Loads the state of the last build. A missing or unreadable state file makes all units stale.
+     */
+    public synchronized void load() {
+        previous.clear();
+        if (!stateFile.isFile()) {
+            return;
+        }
+
+        try (InputStream in = java.nio.file.Files.newInputStream(stateFile.toPath())) {
+            previous.load(in);
+        }
+        catch (IOException e) {
+            previous.clear();
+        }
+    }
+
+    /**
+     * Writes the state of the current build.
+     *
+     * @throws IOException if the state file could not be written
+     */
+    public synchronized void save() throws IOException {
+        Files.createParentDirs(stateFile);
+
+        File tmpFile = File.createTempFile(stateFile.getName(), ".tmp", stateFile.getParentFile());
+        try {
+            try (OutputStream out = java.nio.file.Files.newOutputStream(tmpFile.toPath())) {
+                current.store(out, null);
+            }
+
+            java.nio.file.Files.move(tmpFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            java.nio.file.Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * Checks whether the given fingerprint equals the one recorded by the last build and keeps the entry if so.
+     *
+     * @param key key of the unit or file
+     * @param fingerprint current fingerprint
+     * @return true if the unit or file is up to date
+     */
+    public synchronized boolean isUpToDate(String key, String fingerprint) {
+        if (!fingerprint.equals(previous.getProperty(key))) {
+            return false;
+        }
+
+        current.setProperty(key, fingerprint);
+        String dependencies = previous.getProperty(key + DEPENDENCIES_SUFFIX);
+        if (dependencies != null) {
+            current.setProperty(key + DEPENDENCIES_SUFFIX, dependencies);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param key key of the unit or file
+     * @return dependencies recorded by the last build in the recorded order, empty if there are none
+     */
+    public synchronized List<File> getDependencies(String key) {
+        List<File> files = new ArrayList<>();
+        String dependencies = previous.getProperty(key + DEPENDENCIES_SUFFIX);
+        if (dependencies != null) {
+            for (String path : dependencies.split("\n")) {
+                files.add(new File(path));
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Records the fingerprint of a processed unit or file.
+     *
+     * @param key key of the unit or file
+     * @param fingerprint fingerprint taken after the optimization
+     */
+    public synchronized void update(String key, String fingerprint) {
+        current.setProperty(key, fingerprint);
+    }
+
+    /**
+     * Records the fingerprint of a processed unit or file along with the files it depends on.
+     *
+     * @param key key of the unit or file
+     * @param fingerprint fingerprint taken after the optimization, including the dependencies
+     * @param dependencies files the unit or file depends on in the order of the fingerprint
+     */
+    public synchronized void update(String key, String fingerprint, Collection<File> dependencies) {
+        current.setProperty(key, fingerprint);
+        if (dependencies.isEmpty()) {
+            current.remove(key + DEPENDENCIES_SUFFIX);
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (File file : dependencies) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+
+            sb.append(file.getAbsolutePath());
+        }
+
+        current.setProperty(key + DEPENDENCIES_SUFFIX, sb.toString());
+    }
+
+    /**
+     * Computes a key identifying a unit by its configuration, so that any configuration change makes it stale.
+     *
+     * @param configuration all settings of the unit
+     * @return hex encoded key
+     */
+    public static String computeKey(String configuration) {
+        return Hashing.sha256().hashString(configuration, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Computes the fingerprint of the given files. Missing files are part of the fingerprint too.
+     *
+     * @param files input and output files
+     * @return hex encoded fingerprint
+     */
+    public static String computeFingerprint(Iterable<File> files) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (File file : files) {
+            hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8).putChar('\n');
+            if (file.isFile()) {
+                hasher.putLong(file.length()).putLong(file.lastModified());
+            }
+            else {
+                hasher.putLong(-1L);
+            }
+        }
+
+        return hasher.hash().toString();
+    }
+}
@@ -0,0 +1,1058 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.util.Arrays;
+
+/**
+ * Deflate encoder (RFC 1951) trading CPU time for a better compression ratio, following the approach of Zopfli. Instead
+ * of choosing matches greedily, every part of the input is parsed with the shortest path through all literals and
+ * matches found by an extensive search. The bit costs of the symbols are estimated from the statistics of the previous
+ * parse, so the parse is repeated for the given number of iterations or until the cost no longer changes. The input is
+ * split into blocks wherever separate Huffman codes are cheaper, and each block is written as stored, fixed or dynamic
+ * block, whatever is smallest.
+ * <p>
+ * The output is a raw deflate stream which can be decoded by every inflater, e.g. {@link java.util.zip.Inflater} with
+ * <code>nowrap</code>. The encoder is stateless and thread-safe.
+ */
+public final class ExhaustiveDeflater {
+
+    private static final int WINDOW_SIZE = 32768;
+
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private static final int MIN_MATCH = 3;
+
+    private static final int MAX_MATCH = 258;
+
+    private static final int HASH_BITS = 16;
+
+    private static final int MAX_CHAIN = 8192;
+
+    // parts of the input parsed independently, bounds the memory used for the found matches
+    private static final int MASTER_BLOCK_SIZE = 1000000;
+
+    private static final int MIN_SPLIT_SYMBOLS = 256;
+
+    private static final int SPLIT_SAMPLES = 9;
+
+    private static final int MAX_STORED_SIZE = 65535;
+
+    private static final int END_OF_BLOCK = 256;
+
+    private static final int NUM_LITLEN = 288;
+
+    private static final int NUM_DIST = 32;
+
+    private static final int NUM_CODE_LENGTH = 19;
+
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+
+    private static final int[] DIST_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097,
+        6145, 8193, 12289, 16385, 24577
+    };
+
+    private static final int[] DIST_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    // index of the length code for every match length
+    private static final int[] LENGTH_CODE = new int[MAX_MATCH + 1];
+
+    private static final int[] FIXED_LITLEN_LENGTHS = new int[NUM_LITLEN];
+
+    private static final int[] FIXED_DIST_LENGTHS = new int[NUM_DIST];
+
+    static {
+        for (int code = 0; code < LENGTH_BASE.length; code++) {
+            int end = code + 1 < LENGTH_BASE.length ? LENGTH_BASE[code + 1] : MAX_MATCH + 1;
+            for (int length = LENGTH_BASE[code]; length < end; length++) {
+                LENGTH_CODE[length] = code;
+            }
+        }
+
+        // 285 is the only code for 258
+        LENGTH_CODE[MAX_MATCH] = LENGTH_BASE.length - 1;
+
+        for (int i = 0; i < NUM_LITLEN; i++) {
+            FIXED_LITLEN_LENGTHS[i] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+
+        Arrays.fill(FIXED_DIST_LENGTHS, 5);
+    }
+
+    private ExhaustiveDeflater() {
+    }
+
+    /**
+     * Compresses the given data.
+     *
+     * @param data data to be compressed
+     * @param iterations maximum number of parse iterations per block, more iterations compress better but slower
+     * @return raw deflate stream
+     */
+    public static byte[] deflate(byte[] data, int iterations) {
+        BitWriter out = new BitWriter(data.length / 3 + 64);
+        if (data.length == 0) {
+            // final fixed block containing only the end of block code
+            out.writeBits(1, 1);
+            out.writeBits(1, 2);
+            out.writeBits(0, 7);
+            return out.toByteArray();
+        }
+
+        MatchFinder finder = new MatchFinder(data);
+        for (int start = 0; start < data.length; start += MASTER_BLOCK_SIZE) {
+            int end = Math.min(start + MASTER_BLOCK_SIZE, data.length);
+            Matches matches = finder.find(start, end);
+            deflatePart(data, start, end, matches, Math.max(1, iterations), end == data.length, out);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void deflatePart(byte[] data, int start, int end, Matches matches, int iterations,
+                boolean last, BitWriter out) {
+        // split on a greedy parse, which resembles the final parse closely enough
+        Symbols greedy = parseGreedy(data, start, end, matches);
+        int[] splitPositions = toPositions(greedy, start, splitBlocks(greedy));
+
+        Symbols optimal = new Symbols(end - start);
+        int[] blockStarts = new int[splitPositions.length + 1];
+        int blockStart = start;
+        for (int i = 0; i <= splitPositions.length; i++) {
+            int blockEnd = i < splitPositions.length ? splitPositions[i] : end;
+            blockStarts[i] = optimal.size;
+            parseOptimal(data, blockStart, blockEnd, matches, iterations, optimal);
+            blockStart = blockEnd;
+        }
+
+        // the optimal parse may prefer other block boundaries
+        int[] resplit = splitBlocks(optimal);
+        int[] blocks = Arrays.copyOfRange(blockStarts, 1, blockStarts.length);
+        if (blockCost(optimal, resplit) < blockCost(optimal, blocks)) {
+            blocks = resplit;
+        }
+
+        int from = 0;
+        int position = start;
+        for (int i = 0; i <= blocks.length; i++) {
+            int to = i < blocks.length ? blocks[i] : optimal.size;
+            int length = optimal.length(from, to);
+            writeBlock(data, position, length, optimal, from, to, last && i == blocks.length, out);
+            position += length;
+            from = to;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // parsing
+    // ---------------------------------------------------------------------------------------------------------------
+
+    private static Symbols parseGreedy(byte[] data, int start, int end, Matches matches) {
+        Symbols symbols = new Symbols((end - start) / 2);
+        int pos = start;
+        while (pos < end) {
+            int last = matches.end(pos) - 1;
+            if (last >= matches.start(pos) && matches.lengths[last] >= MIN_MATCH) {
+                int length = Math.min(matches.lengths[last], end - pos);
+                if (length >= MIN_MATCH) {
+                    symbols.add(length, matches.distances[last]);
+                    pos += length;
+                    continue;
+                }
+            }
+
+            symbols.add(data[pos] & 0xff, 0);
+            pos++;
+        }
+
+        return symbols;
+    }
+
+    /**
+     * Appends the cheapest parse of the given block to the symbols. The costs of the symbols are estimated from the
+     * statistics of the previous parse, starting with a greedy one.
+     */
+    private static void parseOptimal(byte[] data, int start, int end, Matches matches, int iterations,
+                Symbols target) {
+        Symbols current = parseGreedy(data, start, end, matches);
+        Symbols best = current;
+        long bestCost = dynamicCost(current, 0, current.size);
+        long lastCost = -1;
+
+        int n = end - start;
+        double[] costs = new double[n + 1];
+        int[] lengths = new int[n + 1];
+        int[] distances = new int[n + 1];
+        double[] litLenCosts = new double[NUM_LITLEN];
+        double[] distCosts = new double[NUM_DIST];
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            estimateCosts(current, litLenCosts, distCosts);
+            current = shortestPath(data, start, end, matches, litLenCosts, distCosts, costs, lengths, distances);
+
+            long cost = dynamicCost(current, 0, current.size);
+            if (cost < bestCost) {
+                best = current;
+                bestCost = cost;
+            }
+
+            if (cost == lastCost) {
+                // converged
+                break;
+            }
+
+            lastCost = cost;
+        }
+
+        target.addAll(best);
+    }
+
+    private static Symbols shortestPath(byte[] data, int start, int end, Matches matches, double[] litLenCosts,
+                double[] distCosts, double[] costs, int[] lengths, int[] distances) {
+        int n = end - start;
+        Arrays.fill(costs, Double.MAX_VALUE);
+        costs[0] = 0;
+
+        double[] lengthCosts = new double[MAX_MATCH + 1];
+        for (int length = MIN_MATCH; length <= MAX_MATCH; length++) {
+            int code = LENGTH_CODE[length];
+            lengthCosts[length] = litLenCosts[257 + code] + LENGTH_EXTRA[code];
+        }
+
+        for (int i = 0; i < n; i++) {
+            double cost = costs[i];
+            int pos = start + i;
+
+            double literal = cost + litLenCosts[data[pos] & 0xff];
+            if (literal < costs[i + 1]) {
+                costs[i + 1] = literal;
+                lengths[i + 1] = 1;
+                distances[i + 1] = 0;
+            }
+
+            // every length up to the longest match, each one with the shortest distance reaching it
+            int previousLength = MIN_MATCH - 1;
+            int maxLength = n - i;
+            for (int m = matches.start(pos), mEnd = matches.end(pos); m < mEnd && previousLength < maxLength; m++) {
+                int distance = matches.distances[m];
+                int distCode = distanceCode(distance);
+                double matchCost = cost + distCosts[distCode] + DIST_EXTRA[distCode];
+                int toLength = Math.min(matches.lengths[m], maxLength);
+                for (int length = previousLength + 1; length <= toLength; length++) {
+                    double total = matchCost + lengthCosts[length];
+                    if (total < costs[i + length]) {
+                        costs[i + length] = total;
+                        lengths[i + length] = length;
+                        distances[i + length] = distance;
+                    }
+                }
+
+                previousLength = toLength;
+            }
+        }
+
+        // trace back the path
+        int count = 0;
+        for (int i = n; i > 0; i -= lengths[i]) {
+            count++;
+        }
+
+        Symbols symbols = new Symbols(count);
+        symbols.size = count;
+        for (int i = n, s = count - 1; i > 0; i -= lengths[i], s--) {
+            if (lengths[i] == 1) {
+                symbols.litLens[s] = data[start + i - 1] & 0xff;
+                symbols.dists[s] = 0;
+            }
+            else {
+                symbols.litLens[s] = lengths[i];
+                symbols.dists[s] = distances[i];
+            }
+        }
+
+        return symbols;
+    }
+
+    private static void estimateCosts(Symbols symbols, double[] litLenCosts, double[] distCosts) {
+        int[] litLenCounts = new int[NUM_LITLEN];
+        int[] distCounts = new int[NUM_DIST];
+        symbols.count(0, symbols.size, litLenCounts, distCounts);
+        entropy(litLenCounts, litLenCosts);
+        entropy(distCounts, distCosts);
+    }
+
+    private static void entropy(int[] counts, double[] bits) {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+
+        double log2Total = log2(total == 0 ? counts.length : total);
+        for (int i = 0; i < counts.length; i++) {
+            // unused symbols are estimated as if they occurred once
+            bits[i] = counts[i] == 0 ? log2Total : log2Total - log2(counts[i]);
+        }
+    }
+
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // block splitting
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return symbol indexes where new blocks start, ascending
+     */
+    private static int[] splitBlocks(Symbols symbols) {
+        IntList splits = new IntList();
+        split(symbols, 0, symbols.size, splits);
+        int[] result = splits.toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static void split(Symbols symbols, int from, int to, IntList splits) {
+        if (to - from < 2 * MIN_SPLIT_SYMBOLS) {
+            return;
+        }
+
+        long unsplit = dynamicCost(symbols, from, to);
+
+        // narrow down the best split point by sampling
+        int lo = from + MIN_SPLIT_SYMBOLS;
+        int hi = to - MIN_SPLIT_SYMBOLS;
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        while (hi - lo > SPLIT_SAMPLES) {
+            int[] points = new int[SPLIT_SAMPLES];
+            int bestIndex = -1;
+            long sampleCost = Long.MAX_VALUE;
+            for (int i = 0; i < SPLIT_SAMPLES; i++) {
+                points[i] = lo + (int) ((long) (hi - lo) * (i + 1) / (SPLIT_SAMPLES + 1));
+                long cost = dynamicCost(symbols, from, points[i]) + dynamicCost(symbols, points[i], to);
+                if (cost < sampleCost) {
+                    sampleCost = cost;
+                    bestIndex = i;
+                }
+            }
+
+            if (sampleCost >= bestCost) {
+                break;
+            }
+
+            best = points[bestIndex];
+            bestCost = sampleCost;
+            lo = bestIndex == 0 ? lo : points[bestIndex - 1];
+            hi = bestIndex == SPLIT_SAMPLES - 1 ? hi : points[bestIndex + 1];
+        }
+
+        if (best < 0 || bestCost >= unsplit) {
+            return;
+        }
+
+        splits.add(best);
+        split(symbols, from, best, splits);
+        split(symbols, best, to, splits);
+    }
+
+    private static int[] toPositions(Symbols symbols, int start, int[] splits) {
+        int[] positions = new int[splits.length];
+        int position = start;
+        int symbol = 0;
+        for (int i = 0; i < splits.length; i++) {
+            position += symbols.length(symbol, splits[i]);
+            symbol = splits[i];
+            positions[i] = position;
+        }
+
+        return positions;
+    }
+
+    private static long blockCost(Symbols symbols, int[] splits) {
+        long cost = 0;
+        int from = 0;
+        for (int i = 0; i <= splits.length; i++) {
+            int to = i < splits.length ? splits[i] : symbols.size;
+            cost += dynamicCost(symbols, from, to);
+            from = to;
+        }
+
+        return cost;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // block costs and output
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return size in bits of a dynamic block containing the given symbols
+     */
+    private static long dynamicCost(Symbols symbols, int from, int to) {
+        int[] litLenCounts = new int[NUM_LITLEN];
+        int[] distCounts = new int[NUM_DIST];
+        symbols.count(from, to, litLenCounts, distCounts);
+        litLenCounts[END_OF_BLOCK] = 1;
+
+        int[] litLenLengths = new int[NUM_LITLEN];
+        int[] distLengths = new int[NUM_DIST];
+        codeLengths(litLenCounts, distCounts, litLenLengths, distLengths);
+
+        return 3 + new TreeHeader(litLenLengths, distLengths).bits
+                    + dataBits(litLenCounts, distCounts, litLenLengths, distLengths);
+    }
+
+    private static void codeLengths(int[] litLenCounts, int[] distCounts, int[] litLenLengths, int[] distLengths) {
+        limitedCodeLengths(litLenCounts, 15, litLenLengths);
+        limitedCodeLengths(distCounts, 15, distLengths);
+
+        // some inflaters reject distance codes with less than two symbols
+        int used = 0;
+        for (int length : distLengths) {
+            if (length > 0) {
+                used++;
+            }
+        }
+
+        if (used == 0) {
+            distLengths[0] = 1;
+            distLengths[1] = 1;
+        }
+        else if (used == 1) {
+            // the used symbol has length 1, add a second one
+            distLengths[distLengths[0] == 0 ? 0 : 1] = 1;
+        }
+    }
+
+    private static long dataBits(int[] litLenCounts, int[] distCounts, int[] litLenLengths, int[] distLengths) {
+        long bits = 0;
+        for (int i = 0; i < NUM_LITLEN; i++) {
+            bits += (long) litLenCounts[i] * litLenLengths[i];
+            if (i > END_OF_BLOCK && i - 257 < LENGTH_EXTRA.length) {
+                bits += (long) litLenCounts[i] * LENGTH_EXTRA[i - 257];
+            }
+        }
+
+        for (int i = 0; i < DIST_EXTRA.length; i++) {
+            bits += (long) distCounts[i] * (distLengths[i] + DIST_EXTRA[i]);
+        }
+
+        return bits;
+    }
+
+    private static void writeBlock(byte[] data, int position, int length, Symbols symbols, int from, int to,
+                boolean last, BitWriter out) {
+        int[] litLenCounts = new int[NUM_LITLEN];
+        int[] distCounts = new int[NUM_DIST];
+        symbols.count(from, to, litLenCounts, distCounts);
+        litLenCounts[END_OF_BLOCK] = 1;
+
+        int[] litLenLengths = new int[NUM_LITLEN];
+        int[] distLengths = new int[NUM_DIST];
+        codeLengths(litLenCounts, distCounts, litLenLengths, distLengths);
+        TreeHeader header = new TreeHeader(litLenLengths, distLengths);
+
+        long dynamicBits = 3 + header.bits + dataBits(litLenCounts, distCounts, litLenLengths, distLengths);
+        long fixedBits = 3 + dataBits(litLenCounts, distCounts, FIXED_LITLEN_LENGTHS, FIXED_DIST_LENGTHS);
+        long storedBits = storedBits(out, length);
+
+        if (storedBits <= fixedBits && storedBits <= dynamicBits) {
+            writeStored(data, position, length, last, out);
+        }
+        else if (fixedBits <= dynamicBits) {
+            out.writeBits(last ? 1 : 0, 1);
+            out.writeBits(1, 2);
+            writeSymbols(symbols, from, to, FIXED_LITLEN_LENGTHS, FIXED_DIST_LENGTHS, out);
+        }
+        else {
+            out.writeBits(last ? 1 : 0, 1);
+            out.writeBits(2, 2);
+            header.write(out);
+            writeSymbols(symbols, from, to, litLenLengths, distLengths, out);
+        }
+    }
+
+    private static long storedBits(BitWriter out, int length) {
+        int blocks = Math.max(1, (length + MAX_STORED_SIZE - 1) / MAX_STORED_SIZE);
+        // the first header is followed by the padding to the next byte, the later ones are aligned already
+        long padding = (8 - (out.bitCount + 3) % 8) % 8;
+        return blocks * (3 + 32L) + padding + (blocks - 1) * 5L + length * 8L;
+    }
+
+    private static void writeStored(byte[] data, int position, int length, boolean last, BitWriter out) {
+        int offset = 0;
+        do {
+            int size = Math.min(MAX_STORED_SIZE, length - offset);
+            out.writeBits(last && offset + size == length ? 1 : 0, 1);
+            out.writeBits(0, 2);
+            out.alignToByte();
+            out.writeBits(size, 16);
+            out.writeBits(~size & 0xffff, 16);
+            out.writeBytes(data, position + offset, size);
+            offset += size;
+        }
+        while (offset < length);
+    }
+
+    private static void writeSymbols(Symbols symbols, int from, int to, int[] litLenLengths, int[] distLengths,
+                BitWriter out) {
+        int[] litLenCodes = canonicalCodes(litLenLengths);
+        int[] distCodes = canonicalCodes(distLengths);
+        for (int i = from; i < to; i++) {
+            int dist = symbols.dists[i];
+            if (dist == 0) {
+                int literal = symbols.litLens[i];
+                out.writeBits(litLenCodes[literal], litLenLengths[literal]);
+            }
+            else {
+                int length = symbols.litLens[i];
+                int lengthCode = LENGTH_CODE[length];
+                out.writeBits(litLenCodes[257 + lengthCode], litLenLengths[257 + lengthCode]);
+                out.writeBits(length - LENGTH_BASE[lengthCode], LENGTH_EXTRA[lengthCode]);
+
+                int distCode = distanceCode(dist);
+                out.writeBits(distCodes[distCode], distLengths[distCode]);
+                out.writeBits(dist - DIST_BASE[distCode], DIST_EXTRA[distCode]);
+            }
+        }
+
+        out.writeBits(litLenCodes[END_OF_BLOCK], litLenLengths[END_OF_BLOCK]);
+    }
+
+    private static int distanceCode(int distance) {
+        if (distance < 5) {
+            return distance - 1;
+        }
+
+        int log = 31 - Integer.numberOfLeadingZeros(distance - 1);
+        return log * 2 + (((distance - 1) >> (log - 1)) & 1);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Huffman codes
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Computes optimal code lengths not exceeding the given maximum with the package-merge algorithm.
+     */
+    private static void limitedCodeLengths(int[] counts, int maxBits, int[] lengths) {
+        Arrays.fill(lengths, 0);
+
+        int leafCount = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                leafCount++;
+            }
+        }
+
+        if (leafCount == 0) {
+            return;
+        }
+
+        // leaves sorted by weight, ties by symbol
+        long[] sortKeys = new long[leafCount];
+        for (int i = 0, l = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                sortKeys[l++] = ((long) counts[i] << 16) | i;
+            }
+        }
+
+        Arrays.sort(sortKeys);
+
+        if (leafCount == 1) {
+            lengths[(int) (sortKeys[0] & 0xffff)] = 1;
+            return;
+        }
+
+        // nodes are leaves (symbol >= 0) or packages of two nodes of the previous list
+        int capacity = leafCount * (maxBits + 1);
+        long[] weights = new long[capacity];
+        int[] symbols = new int[capacity];
+        int[] lefts = new int[capacity];
+        int[] rights = new int[capacity];
+        int nodes = 0;
+
+        int[] leaves = new int[leafCount];
+        for (int i = 0; i < leafCount; i++) {
+            weights[nodes] = sortKeys[i] >>> 16;
+            symbols[nodes] = (int) (sortKeys[i] & 0xffff);
+            leaves[i] = nodes++;
+        }
+
+        int[] list = leaves.clone();
+        for (int level = 1; level < maxBits; level++) {
+            int packages = list.length / 2;
+            int[] merged = new int[leafCount + packages];
+            int leaf = 0;
+            int pkg = 0;
+            int m = 0;
+            while (leaf < leafCount || pkg < packages) {
+                long packageWeight = pkg < packages ? weights[list[2 * pkg]] + weights[list[2 * pkg + 1]] : 0;
+                if (pkg >= packages || (leaf < leafCount && weights[leaves[leaf]] <= packageWeight)) {
+                    merged[m++] = leaves[leaf++];
+                }
+                else {
+                    weights[nodes] = packageWeight;
+                    symbols[nodes] = -1;
+                    lefts[nodes] = list[2 * pkg];
+                    rights[nodes] = list[2 * pkg + 1];
+                    merged[m++] = nodes++;
+                    pkg++;
+                }
+            }
+
+            list = merged;
+        }
+
+        // every occurrence of a leaf in the first 2n - 2 nodes adds one bit to its code length
+        int[] stack = new int[maxBits * 2 + 2];
+        for (int i = 0; i < 2 * leafCount - 2; i++) {
+            int top = 0;
+            stack[top++] = list[i];
+            while (top > 0) {
+                int node = stack[--top];
+                if (symbols[node] >= 0) {
+                    lengths[symbols[node]]++;
+                }
+                else {
+                    stack[top++] = lefts[node];
+                    stack[top++] = rights[node];
+                }
+            }
+        }
+    }
+
+    /**
+     * @return canonical codes for the given code lengths, bit reversed to be written least significant bit first
+     */
+    private static int[] canonicalCodes(int[] lengths) {
+        int[] lengthCounts = new int[16];
+        for (int length : lengths) {
+            lengthCounts[length]++;
+        }
+
+        lengthCounts[0] = 0;
+        int[] nextCode = new int[16];
+        int code = 0;
+        for (int bits = 1; bits < 16; bits++) {
+            code = (code + lengthCounts[bits - 1]) << 1;
+            nextCode[bits] = code;
+        }
+
+        int[] codes = new int[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            int length = lengths[i];
+            if (length > 0) {
+                codes[i] = Integer.reverse(nextCode[length]++) >>> (32 - length);
+            }
+        }
+
+        return codes;
+    }
+
+    /**
+     * Run length encoded code lengths of a dynamic block.
+     */
+    private static final class TreeHeader {
+
+        private final int litLenCount;
+        private final int distCount;
+        private final IntList codes = new IntList();
+        private final IntList extras = new IntList();
+        private final int[] codeLengthLengths = new int[NUM_CODE_LENGTH];
+        private final int codeLengthCount;
+        private final long bits;
+
+        private TreeHeader(int[] litLenLengths, int[] distLengths) {
+            int hlit = 286;
+            while (hlit > 257 && litLenLengths[hlit - 1] == 0) {
+                hlit--;
+            }
+
+            int hdist = 30;
+            while (hdist > 1 && distLengths[hdist - 1] == 0) {
+                hdist--;
+            }
+
+            litLenCount = hlit;
+            distCount = hdist;
+
+            int[] all = new int[hlit + hdist];
+            System.arraycopy(litLenLengths, 0, all, 0, hlit);
+            System.arraycopy(distLengths, 0, all, hlit, hdist);
+            encode(all);
+
+            int[] counts = new int[NUM_CODE_LENGTH];
+            for (int i = 0; i < codes.size; i++) {
+                counts[codes.values[i]]++;
+            }
+
+            limitedCodeLengths(counts, 7, codeLengthLengths);
+            int used = 0;
+            for (int length : codeLengthLengths) {
+                if (length > 0) {
+                    used++;
+                }
+            }
+
+            if (used == 1) {
+                // a complete code needs two symbols
+                codeLengthLengths[codeLengthLengths[0] == 0 ? 0 : 1] = 1;
+            }
+
+            int hclen = NUM_CODE_LENGTH;
+            while (hclen > 4 && codeLengthLengths[CODE_LENGTH_ORDER[hclen - 1]] == 0) {
+                hclen--;
+            }
+
+            codeLengthCount = hclen;
+
+            long total = 14 + 3L * hclen;
+            for (int i = 0; i < codes.size; i++) {
+                int code = codes.values[i];
+                total += codeLengthLengths[code] + (code == 16 ? 2 : code == 17 ? 3 : code == 18 ? 7 : 0);
+            }
+
+            bits = total;
+        }
+
+        private void encode(int[] lengths) {
+            int i = 0;
+            while (i < lengths.length) {
+                int value = lengths[i];
+                int run = 1;
+                while (i + run < lengths.length && lengths[i + run] == value) {
+                    run++;
+                }
+
+                i += run;
+                if (value == 0) {
+                    while (run >= 11) {
+                        int repeat = Math.min(run, 138);
+                        add(18, repeat - 11);
+                        run -= repeat;
+                    }
+
+                    if (run >= 3) {
+                        add(17, run - 3);
+                        run = 0;
+                    }
+                }
+                else {
+                    add(value, 0);
+                    run--;
+                    while (run >= 3) {
+                        int repeat = Math.min(run, 6);
+                        add(16, repeat - 3);
+                        run -= repeat;
+                    }
+                }
+
+                while (run > 0) {
+                    add(value, 0);
+                    run--;
+                }
+            }
+        }
+
+        private void add(int code, int extra) {
+            codes.add(code);
+            extras.add(extra);
+        }
+
+        private void write(BitWriter out) {
+            out.writeBits(litLenCount - 257, 5);
+            out.writeBits(distCount - 1, 5);
+            out.writeBits(codeLengthCount - 4, 4);
+            for (int i = 0; i < codeLengthCount; i++) {
+                out.writeBits(codeLengthLengths[CODE_LENGTH_ORDER[i]], 3);
+            }
+
+            int[] codeLengthCodes = canonicalCodes(codeLengthLengths);
+            for (int i = 0; i < codes.size; i++) {
+                int code = codes.values[i];
+                out.writeBits(codeLengthCodes[code], codeLengthLengths[code]);
+                if (code >= 16) {
+                    out.writeBits(extras.values[i], code == 16 ? 2 : code == 17 ? 3 : 7);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // data structures
+    // ---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Finds for every position the shortest distance of every match length, walking hash chains over the whole
+     * input.
+     */
+    private static final class MatchFinder {
+
+        private final byte[] data;
+        private final int[] head = new int[1 << HASH_BITS];
+        private final int[] prev = new int[WINDOW_SIZE];
+
+        private MatchFinder(byte[] data) {
+            this.data = data;
+            Arrays.fill(head, -1);
+        }
+
+        private Matches find(int start, int end) {
+            Matches matches = new Matches(start, end);
+            for (int pos = start; pos < end; pos++) {
+                int maxLength = Math.min(MAX_MATCH, end - pos);
+                if (maxLength >= MIN_MATCH) {
+                    search(pos, maxLength, matches);
+                }
+
+                matches.close(pos);
+                insert(pos);
+            }
+
+            return matches;
+        }
+
+        private void search(int pos, int maxLength, Matches matches) {
+            int bestLength = MIN_MATCH - 1;
+            int candidate = head[hash(pos)];
+            int chain = MAX_CHAIN;
+            while (candidate >= 0 && pos - candidate <= WINDOW_SIZE && chain-- > 0) {
+                if (data[candidate + bestLength] == data[pos + bestLength]) {
+                    int length = 0;
+                    while (length < maxLength && data[candidate + length] == data[pos + length]) {
+                        length++;
+                    }
+
+                    if (length > bestLength) {
+                        matches.add(length, pos - candidate);
+                        bestLength = length;
+                        if (length == maxLength) {
+                            break;
+                        }
+                    }
+                }
+
+                int next = prev[candidate & WINDOW_MASK];
+                if (next >= candidate) {
+                    break;
+                }
+
+                candidate = next;
+            }
+        }
+
+        private void insert(int pos) {
+            if (pos + MIN_MATCH <= data.length) {
+                int h = hash(pos);
+                prev[pos & WINDOW_MASK] = head[h];
+                head[h] = pos;
+            }
+        }
+
+        private int hash(int pos) {
+            int key = (data[pos] & 0xff) << 16 | (data[pos + 1] & 0xff) << 8 | (data[pos + 2] & 0xff);
+            return (key * 0x9E3779B1) >>> (32 - HASH_BITS);
+        }
+    }
+
+    /**
+     * Matches per position as (length, distance) pairs of ascending length and distance.
+     */
+    private static final class Matches {
+
+        private final int start;
+        private final int[] offsets;
+        private int[] lengths = new int[1024];
+        private int[] distances = new int[1024];
+        private int size = 0;
+
+        private Matches(int start, int end) {
+            this.start = start;
+            offsets = new int[end - start + 1];
+        }
+
+        private void add(int length, int distance) {
+            if (size == lengths.length) {
+                lengths = Arrays.copyOf(lengths, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+
+            lengths[size] = length;
+            distances[size++] = distance;
+        }
+
+        private void close(int pos) {
+            offsets[pos - start + 1] = size;
+        }
+
+        private int start(int pos) {
+            return offsets[pos - start];
+        }
+
+        private int end(int pos) {
+            return offsets[pos - start + 1];
+        }
+    }
+
+    /**
+     * Parsed literals (distance 0) and matches.
+     */
+    private static final class Symbols {
+
+        private int[] litLens;
+        private int[] dists;
+        private int size = 0;
+
+        private Symbols(int capacity) {
+            litLens = new int[Math.max(16, capacity)];
+            dists = new int[litLens.length];
+        }
+
+        private void add(int litLen, int dist) {
+            ensureCapacity(size + 1);
+            litLens[size] = litLen;
+            dists[size++] = dist;
+        }
+
+        private void addAll(Symbols symbols) {
+            ensureCapacity(size + symbols.size);
+            System.arraycopy(symbols.litLens, 0, litLens, size, symbols.size);
+            System.arraycopy(symbols.dists, 0, dists, size, symbols.size);
+            size += symbols.size;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > litLens.length) {
+                int newCapacity = Math.max(capacity, litLens.length * 2);
+                litLens = Arrays.copyOf(litLens, newCapacity);
+                dists = Arrays.copyOf(dists, newCapacity);
+            }
+        }
+
+        /**
+         * @return number of input bytes covered by the given symbols
+         */
+        private int length(int from, int to) {
+            int length = 0;
+            for (int i = from; i < to; i++) {
+                length += dists[i] == 0 ? 1 : litLens[i];
+            }
+
+            return length;
+        }
+
+        private void count(int from, int to, int[] litLenCounts, int[] distCounts) {
+            for (int i = from; i < to; i++) {
+                if (dists[i] == 0) {
+                    litLenCounts[litLens[i]]++;
+                }
+                else {
+                    litLenCounts[257 + LENGTH_CODE[litLens[i]]]++;
+                    distCounts[distanceCode(dists[i])]++;
+                }
+            }
+
+            litLenCounts[END_OF_BLOCK]++;
+        }
+    }
+
+    private static final class IntList {
+
+        private int[] values = new int[64];
+        private int size = 0;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            values[size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Writes bits least significant bit first, as required by deflate.
+     */
+    private static final class BitWriter {
+
+        private byte[] bytes;
+        private int size = 0;
+        private long bitBuffer = 0;
+        private int bitCount = 0;
+
+        private BitWriter(int capacity) {
+            bytes = new byte[Math.max(64, capacity)];
+        }
+
+        private void writeBits(int value, int count) {
+            bitBuffer |= (long) (value & ((1 << count) - 1)) << bitCount;
+            bitCount += count;
+            while (bitCount >= 8) {
+                writeByte((int) bitBuffer);
+                bitBuffer >>>= 8;
+                bitCount -= 8;
+            }
+        }
+
+        private void alignToByte() {
+            if (bitCount > 0) {
+                writeBits(0, 8 - bitCount);
+            }
+        }
+
+        private void writeBytes(byte[] data, int offset, int length) {
+            ensureCapacity(size + length);
+            System.arraycopy(data, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        private byte[] toByteArray() {
+            alignToByte();
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
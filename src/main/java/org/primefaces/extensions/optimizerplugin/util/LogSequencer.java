@@ -0,0 +1,70 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Hands out one {@link BufferedLog} per task and writes them to the Maven log in task order as soon as all preceding
+ * tasks have completed.
+ */
+public class LogSequencer {
+
+    private final Log target;
+
+    private final BufferedLog[] logs;
+
+    private final boolean[] completed;
+
+    private int next = 0;
+
+    public LogSequencer(Log target, int size) {
+        this.target = target;
+        this.logs = new BufferedLog[size];
+        this.completed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            logs[i] = new BufferedLog(target);
+        }
+    }
+
+    public Log getLog(int index) {
+        return logs[index];
+    }
+
+    /**
+     * Marks the task with the given index as completed and flushes all logs which are in order now.
+     *
+     * @param index index of the completed task
+     */
+    public synchronized void complete(int index) {
+        completed[index] = true;
+        while (next < logs.length && completed[next]) {
+            logs[next++].flushTo(target);
+        }
+    }
+
+    /**
+     * Flushes the logs of all tasks regardless of their completion, e.g. after a failure.
+     */
+    public synchronized void flushAll() {
+        while (next < logs.length) {
+            logs[next++].flushTo(target);
+        }
+    }
+}
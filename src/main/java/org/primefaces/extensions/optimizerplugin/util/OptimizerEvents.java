@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events of the plugin, so that a recording of a build attributes the time spent in Closure
+ * Compiler, CSS compression, Data URIs and gzip to specific resources. An event is started with {@link Event#begin()}
+ * before the work and committed afterwards. Events cost next to nothing while no recording is running, fields are
+ * only set if {@link Event#shouldCommit()} is true.
+ */
+public final class OptimizerEvents {
+
+    private static final String PREFIX = "org.primefaces.extensions.optimizerplugin.";
+
+    private OptimizerEvents() {
+    }
+
+    @Name(PREFIX + "ScanCompleted")
+    @Label("Scan Completed")
+    @Description("Input directory scanned for CSS and JavaScript files")
+    @Category({"Resources Optimizer"})
+    public static final class ScanCompleted extends Event {
+
+        @Label("Directory")
+        public String directory;
+
+        @Label("CSS Files")
+        public int cssFiles;
+
+        @Label("JavaScript Files")
+        public int jsFiles;
+
+        @Label("Cached")
+        @Description("Files taken from the scan of another resources set")
+        public boolean cached;
+    }
+
+    @Name(PREFIX + "FileOptimized")
+    @Label("File Optimized")
+    @Description("Single CSS or JavaScript file compressed")
+    @Category({"Resources Optimizer"})
+    public static final class FileOptimized extends Event {
+
+        @Label("File")
+        public String file;
+
+        @Label("Type")
+        public String type;
+
+        @Label("Original Size")
+        @DataAmount
+        public long originalSize;
+
+        @Label("Optimized Size")
+        @DataAmount
+        public long optimizedSize;
+
+        @Label("Cached")
+        @Description("Result taken from the result cache")
+        public boolean cached;
+    }
+
+    @Name(PREFIX + "AggregationBuilt")
+    @Label("Aggregation Built")
+    @Description("Files aggregated into one output file, compressed or not")
+    @Category({"Resources Optimizer"})
+    public static final class AggregationBuilt extends Event {
+
+        @Label("Output File")
+        public String outputFile;
+
+        @Label("Type")
+        public String type;
+
+        @Label("Files")
+        public int files;
+
+        @Label("Original Size")
+        @DataAmount
+        public long originalSize;
+
+        @Label("Optimized Size")
+        @DataAmount
+        public long optimizedSize;
+
+        @Label("Compressed")
+        public boolean compressed;
+    }
+
+    @Name(PREFIX + "DataUriResolved")
+    @Label("Data URI Resolved")
+    @Description("Image reference of a CSS file replaced by a Data URI")
+    @Category({"Resources Optimizer"})
+    public static final class DataUriResolved extends Event {
+
+        @Label("Image")
+        public String image;
+
+        @Label("Image Size")
+        @DataAmount
+        public long imageSize;
+
+        @Label("Cached")
+        @Description("Data URI taken from the cache of already encoded images")
+        public boolean cached;
+    }
+
+    @Name(PREFIX + "GzipWritten")
+    @Label("Gzip Written")
+    @Description("Gzipped variant of an optimized file compressed")
+    @Category({"Resources Optimizer"})
+    public static final class GzipWritten extends Event {
+
+        @Label("File")
+        public String file;
+
+        @Label("Original Size")
+        @DataAmount
+        public long originalSize;
+
+        @Label("Gzipped Size")
+        @DataAmount
+        @Description("0 if no gzipped variant was written")
+        public long gzippedSize;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Writes gzipped variants (.gz) of optimized files on its own threads, so that compressing a file overlaps with
+ * optimizing the next one. The content of a file is taken when it is submitted, later changes of the file do not
+ * affect a pending compression. Compressions of the same file are executed in the order of their submission.
+ * <p>
+ * Files smaller than the minimum size or compressing worse than the minimum savings get no gzipped variant, an
+ * outdated one from a previous build is removed.
+ * <p>
+ * With a positive number of iterations, the {@link ExhaustiveDeflater} is used in addition to {@link Deflater}, and
+ * the smaller result is kept. Several files are compressed in parallel then, as the exhaustive encoder is much slower.
+ */
+public class Precompressor implements AutoCloseable {
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int GZIP_HEADER_SIZE = 10;
+
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private final int level;
+
+    private final int iterations;
+
+    private final long minSize;
+
+    private final int minSavings;
+
+    private final ExecutorService executor;
+
+    private final Map<File, CompletableFuture<Void>> pending = new HashMap<>();
+
+    private final List<CompletableFuture<Void>> submitted = new ArrayList<>();
+
+    private TimingReport timingReport;
+
+    /**
+     * @param level compression level from 1 (fastest) to 9 (best compression)
+     * @param iterations iterations of the exhaustive deflate encoder, 0 to use only {@link Deflater}
+     * @param minSize minimum size in bytes of files to be compressed
+     * @param minSavings minimum savings in percent of the original size
+     * @param threads number of compressing threads
+     */
+    public Precompressor(int level, int iterations, long minSize, int minSavings, int threads) {
+        this.level = level;
+        this.iterations = iterations;
+        this.minSize = minSize;
+        this.minSavings = minSavings;
+
+        final AtomicInteger index = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "resources-optimizer-gzip-" + index.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param timingReport report receiving the duration of every compression, null for none
+     */
+    public void setTimingReport(TimingReport timingReport) {
+        this.timingReport = timingReport;
+    }
+
+    /**
+     * Compresses the current content of the given file asynchronously.
+     *
+     * @param file optimized file
+     * @throws IOException if the file could not be read
+     */
+    public void submit(File file) throws IOException {
+        final byte[] content = Files.readAllBytes(file.toPath());
+        final File key = file.getAbsoluteFile();
+
+        synchronized (pending) {
+            CompletableFuture<Void> previous = pending.get(key);
+            Runnable task = () -> {
+                try {
+                    compress(file, content);
+                }
+                catch (IOException e) {
+                    throw new CompletionException("Gzipping of " + file + " failed", e);
+                }
+            };
+
+            CompletableFuture<Void> future = previous == null ? CompletableFuture.runAsync(task, executor)
+                        : previous.handle((result, failure) -> null).thenRunAsync(task, executor);
+            pending.put(key, future);
+            submitted.add(future);
+        }
+    }
+
+    /**
+     * Waits until all submitted files have been compressed.
+     *
+     * @throws MojoExecutionException the first failure in the order of submission
+     */
+    public void awaitAll() throws MojoExecutionException {
+        List<CompletableFuture<Void>> futures;
+        synchronized (pending) {
+            futures = new ArrayList<>(submitted);
+            submitted.clear();
+            pending.clear();
+        }
+
+        for (CompletableFuture<Void> future : futures) {
+            try {
+                future.join();
+            }
+            catch (CompletionException e) {
+                throw new MojoExecutionException(e.getMessage(), e.getCause());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void compress(File file, byte[] content) throws IOException {
+        OptimizerEvents.GzipWritten event = new OptimizerEvents.GzipWritten();
+        event.begin();
+        long start = System.nanoTime();
+        long gzippedSize = 0;
+        try {
+            gzippedSize = compressContent(file, content);
+        }
+        finally {
+            if (timingReport != null) {
+                timingReport.record(TimingReport.Phase.GZIP, file, start, content.length);
+            }
+
+            if (event.shouldCommit()) {
+                event.file = file.getPath();
+                event.originalSize = content.length;
+                event.gzippedSize = gzippedSize;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * @return size of the written gzipped variant, 0 if none was written
+     */
+    private long compressContent(File file, byte[] content) throws IOException {
+        File gzipped = new File(file.getPath() + GZIP_EXTENSION);
+        if (content.length < minSize) {
+            Files.deleteIfExists(gzipped.toPath());
+            return 0;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+        gzip(content, out, level, iterations);
+        if (out.size() > content.length * (100L - minSavings) / 100) {
+            // not worth it
+            Files.deleteIfExists(gzipped.toPath());
+            return 0;
+        }
+
+        try (OutputStream fos = Files.newOutputStream(gzipped.toPath())) {
+            out.writeTo(fos);
+        }
+
+        return out.size();
+    }
+
+    /**
+     * Gzips a file synchronously, regardless of its size.
+     *
+     * @param file file to be compressed
+     * @param level compression level from 1 (fastest) to 9 (best compression)
+     * @param iterations iterations of the exhaustive deflate encoder, 0 to use only {@link Deflater}
+     * @return gzipped variant of the file
+     * @throws IOException if the file could not be read or the gzipped variant could not be written
+     */
+    public static File gzip(File file, int level, int iterations) throws IOException {
+        File gzipped = new File(file.getAbsolutePath() + GZIP_EXTENSION);
+        try (OutputStream out = Files.newOutputStream(gzipped.toPath())) {
+            gzip(Files.readAllBytes(file.toPath()), out, level, iterations);
+        }
+
+        return gzipped;
+    }
+
+    /**
+     * @param content content to be compressed
+     * @param level compression level from 1 (fastest) to 9 (best compression)
+     * @return size of the content gzipped by {@link Deflater} with the given level, including header and trailer
+     */
+    public static long gzippedSize(byte[] content, int level) {
+        return GZIP_HEADER_SIZE + deflate(content, level).length + GZIP_TRAILER_SIZE;
+    }
+
+    private static void gzip(byte[] content, OutputStream out, int level, int iterations) throws IOException {
+        byte[] deflated = deflate(content, level);
+        if (iterations > 0) {
+            byte[] exhaustive = ExhaustiveDeflater.deflate(content, iterations);
+            if (exhaustive.length < deflated.length) {
+                deflated = exhaustive;
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        // same header as written by java.util.zip.GZIPOutputStream
+        out.write(new byte[] {(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+        out.write(deflated);
+        writeInt(out, (int) crc.getValue());
+        writeInt(out, content.length);
+    }
+
+    private static byte[] deflate(byte[] content, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                out.write(buffer, 0, length);
+            }
+
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        // little endian
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * @param level configured compression level
+     * @return true if the level is supported by {@link Deflater}
+     */
+    public static boolean isValidLevel(int level) {
+        return level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION;
+    }
+}
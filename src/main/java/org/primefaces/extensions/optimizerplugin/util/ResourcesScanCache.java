@@ -0,0 +1,69 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of scan results shared by all {@link ResourcesScanner}s of a build, so that resources sets and aggregations
+ * with the same input directory, includes and excludes walk the directory only once. Results are keyed by the absolute
+ * path of the input directory and the patterns. The cache has to be cleared as soon as resources may have been created
+ * or removed.
+ */
+public class ResourcesScanCache {
+
+    private final Map<String, List<String>> fileNames = new HashMap<>();
+
+    /**
+     * @param inputDir directory to be scanned
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return key of the scan result
+     */
+    public static String computeKey(final File inputDir, final String[] includes, final String[] excludes) {
+        return inputDir.getAbsolutePath() + '\n' + Arrays.toString(includes) + '\n' + Arrays.toString(excludes);
+    }
+
+    /**
+     * @param key key computed by {@link #computeKey(File, String[], String[])}
+     * @return names of the included files relative to the input directory or null if there is no entry for the key
+     */
+    public synchronized List<String> getFileNames(final String key) {
+        return fileNames.get(key);
+    }
+
+    /**
+     * @param key key computed by {@link #computeKey(File, String[], String[])}
+     * @param names names of the included files relative to the input directory
+     */
+    public synchronized void putFileNames(final String key, final List<String> names) {
+        fileNames.put(key, List.copyOf(names));
+    }
+
+    /**
+     * Drops all scan results.
+     */
+    public synchronized void clear() {
+        fileNames.clear();
+    }
+}
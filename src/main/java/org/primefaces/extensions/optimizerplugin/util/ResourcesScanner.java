@@ -19,16 +19,34 @@
 package org.primefaces.extensions.optimizerplugin.util;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RecursiveTask;
 
 import org.apache.maven.plugin.MojoExecutionException;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.MatchPatterns;
 
 /**
  * Scans JavaScript and CSS resources by specifying includes / excludes and prepares two sets with file objects.
+ * <p>
+ * The input directory is walked only once for all includes. Patterns follow the rules of
+ * {@link org.codehaus.plexus.util.DirectoryScanner}, files matched by an include are added in lexicographic order of
+ * their pathnames, include after include.
  *
  * @author Oleg Varaksin (ovaraksin@googlemail.com)
  */
@@ -38,10 +56,40 @@ public class ResourcesScanner {
 
     public static final String JS_FILE_EXTENSION = "js";
 
+    private static final String REGEX_PREFIX = "%regex[";
+
+    private static final String ALL_BELOW = File.separator + "**";
+
+    private final ResourcesScanCache scanCache;
+
+    private final WorkerPool walkerPool;
+
     private final Set<File> jsFiles = new LinkedHashSet<>();
 
     private final Set<File> cssFiles = new LinkedHashSet<>();
 
+    private TimingReport timingReport;
+
+    public ResourcesScanner() {
+        this(null);
+    }
+
+    /**
+     * @param scanCache cache of scan results shared with other scanners or null
+     */
+    public ResourcesScanner(ResourcesScanCache scanCache) {
+        this(scanCache, null);
+    }
+
+    /**
+     * @param scanCache cache of scan results shared with other scanners or null
+     * @param walkerPool pool walking subdirectories concurrently or null to walk the input directory sequentially
+     */
+    public ResourcesScanner(ResourcesScanCache scanCache, WorkerPool walkerPool) {
+        this.scanCache = scanCache;
+        this.walkerPool = walkerPool;
+    }
+
     public Set<File> getJsFiles() {
         return jsFiles;
     }
@@ -50,36 +98,61 @@ public class ResourcesScanner {
         return cssFiles;
     }
 
+    /**
+     * @param timingReport report receiving the duration of every scan, null for none
+     */
+    public void setTimingReport(TimingReport timingReport) {
+        this.timingReport = timingReport;
+    }
+
     public void scan(File inputDir, String[] includes, String[] excludes) throws MojoExecutionException {
+        OptimizerEvents.ScanCompleted event = new OptimizerEvents.ScanCompleted();
+        event.begin();
         try {
             if (inputDir.isFile()) {
                 throw new MojoExecutionException("Config parameter 'inputDir' is wrong. " + inputDir.getAbsolutePath()
                             + " is not a directory");
             }
 
-            DirectoryScanner directoryScanner = new DirectoryScanner();
-            directoryScanner.setBasedir(inputDir);
-            directoryScanner.setExcludes(excludes);
+            if (!inputDir.exists()) {
+                throw new IllegalStateException("basedir " + inputDir + " does not exist");
+            }
 
-            for (String include : includes) {
-                directoryScanner.setIncludes(new String[] {include});
-                directoryScanner.scan();
+            String key = scanCache != null ? ResourcesScanCache.computeKey(inputDir, includes, excludes) : null;
+            List<String> fileNames = key != null ? scanCache.getFileNames(key) : null;
+            boolean cached = fileNames != null;
+            if (!cached) {
+                long start = System.nanoTime();
+                fileNames = scanFileNames(inputDir, includes, excludes);
+                if (timingReport != null) {
+                    timingReport.record(TimingReport.Phase.SCAN, inputDir, start, 0);
+                }
 
-                String[] fileNames = directoryScanner.getIncludedFiles();
-                if (fileNames.length > 1) {
-                    // sort files by pathnames lexicographically
-                    Arrays.sort(fileNames);
+                if (key != null) {
+                    scanCache.putFileNames(key, fileNames);
                 }
+            }
 
-                for (String fileName : fileNames) {
-                    String extension = FileUtils.extension(fileName);
-                    if (CSS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
-						cssFiles.add(new File(inputDir, fileName));
-                    }
-                    else if (JS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
-						jsFiles.add(new File(inputDir, fileName));
-                    }
+            int cssCount = 0;
+            int jsCount = 0;
+            for (String fileName : fileNames) {
+                String extension = FileUtils.extension(fileName);
+                if (CSS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
+                    cssFiles.add(new File(inputDir, fileName));
+                    cssCount++;
                 }
+                else if (JS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
+                    jsFiles.add(new File(inputDir, fileName));
+                    jsCount++;
+                }
+            }
+
+            if (event.shouldCommit()) {
+                event.directory = inputDir.getPath();
+                event.cssFiles = cssCount;
+                event.jsFiles = jsCount;
+                event.cached = cached;
+                event.commit();
             }
         }
         catch (Exception e) {
@@ -87,4 +160,249 @@ public class ResourcesScanner {
                         + inputDir + "'", e);
         }
     }
+
+    /**
+     * Walks the input directory once and collects the names of the included resources relative to it.
+     *
+     * @return names ordered include by include, each lexicographically sorted
+     */
+    private List<String> scanFileNames(File inputDir, String[] includes, String[] excludes) throws IOException {
+        ResourcesFilter filter = new ResourcesFilter(includes, excludes);
+        Path basePath = inputDir.toPath();
+
+        List<String> candidates;
+        if (walkerPool != null && walkerPool.isParallel()) {
+            try {
+                candidates = walkerPool.invoke(new DirectoryTask(basePath, basePath, filter, null));
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        else {
+            candidates = walk(basePath, filter);
+        }
+
+        // sort files by pathnames lexicographically
+        Collections.sort(candidates);
+
+        if (includes.length == 1) {
+            return candidates;
+        }
+
+        Set<String> fileNames = new LinkedHashSet<>();
+        for (String include : includes) {
+            MatchPatterns includePatterns = MatchPatterns.from(normalizePattern(include));
+            for (String candidate : candidates) {
+                if (includePatterns.matches(candidate, true)) {
+                    fileNames.add(candidate);
+                }
+            }
+        }
+
+        return new ArrayList<>(fileNames);
+    }
+
+    private static List<String> walk(Path basePath, ResourcesFilter filter) throws IOException {
+        List<String> candidates = new ArrayList<>();
+        Files.walkFileTree(basePath, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(basePath) || filter.acceptsDirectory(basePath.relativize(dir).toString())) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && isResource(file.getFileName().toString())) {
+                    String name = basePath.relativize(file).toString();
+                    if (filter.acceptsFile(name)) {
+                        candidates.add(name);
+                    }
+                }
+
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (exc instanceof FileSystemLoopException || !file.equals(basePath)) {
+                    // unreadable entries are skipped like the DirectoryScanner does
+                    return FileVisitResult.CONTINUE;
+                }
+
+                throw exc;
+            }
+        });
+
+        return candidates;
+    }
+
+    private static boolean isResource(String fileName) {
+        String extension = FileUtils.extension(fileName);
+        return CSS_FILE_EXTENSION.equalsIgnoreCase(extension) || JS_FILE_EXTENSION.equalsIgnoreCase(extension);
+    }
+
+    private static String[] normalizePatterns(String[] patterns) {
+        String[] normalized = new String[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            normalized[i] = normalizePattern(patterns[i]);
+        }
+
+        return normalized;
+    }
+
+    /**
+     * Normalizes a pattern the same way as {@link org.codehaus.plexus.util.DirectoryScanner} does.
+     */
+    private static String normalizePattern(String pattern) {
+        String normalized = pattern.trim();
+        if (normalized.startsWith(REGEX_PREFIX)) {
+            return normalized;
+        }
+
+        normalized = normalized.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (normalized.endsWith(File.separator)) {
+            normalized += "**";
+        }
+
+        return normalized;
+    }
+
+    /**
+     * An exclude pattern ending with "/**" excludes everything below a matching directory, so that the directory
+     * does not have to be walked at all.
+     */
+    private static List<String> getPrunePatterns(String[] excludes) {
+        List<String> prunePatterns = new ArrayList<>();
+        for (String exclude : normalizePatterns(excludes)) {
+            if (!exclude.startsWith(REGEX_PREFIX) && exclude.endsWith(ALL_BELOW)) {
+                prunePatterns.add(exclude.substring(0, exclude.length() - ALL_BELOW.length()));
+            }
+        }
+
+        return prunePatterns;
+    }
+
+    /**
+     * Include and exclude patterns of a scan.
+     */
+    private static final class ResourcesFilter {
+
+        private final MatchPatterns includePatterns;
+
+        private final MatchPatterns excludePatterns;
+
+        private final MatchPatterns prunePatterns;
+
+        private ResourcesFilter(String[] includes, String[] excludes) {
+            includePatterns = MatchPatterns.from(normalizePatterns(includes));
+            excludePatterns = MatchPatterns.from(normalizePatterns(excludes));
+            prunePatterns = MatchPatterns.from(getPrunePatterns(excludes));
+        }
+
+        /**
+         * @return false if the directory can not contain included and not excluded files
+         */
+        private boolean acceptsDirectory(String name) {
+            return includePatterns.matchesPatternStart(name, true) && !prunePatterns.matches(name, true);
+        }
+
+        private boolean acceptsFile(String name) {
+            return includePatterns.matches(name, true) && !excludePatterns.matches(name, true);
+        }
+    }
+
+    /**
+     * Lists a directory and forks a task for each accepted subdirectory. Links are followed, a directory which is
+     * one of its own ancestors is skipped like {@link Files#walkFileTree} does.
+     */
+    private static final class DirectoryTask extends RecursiveTask<List<String>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path basePath;
+
+        private final transient Path dir;
+
+        private final transient ResourcesFilter filter;
+
+        private final transient DirectoryTask parent;
+
+        private transient Object fileKey;
+
+        private DirectoryTask(Path basePath, Path dir, ResourcesFilter filter, DirectoryTask parent) {
+            this.basePath = basePath;
+            this.dir = dir;
+            this.filter = filter;
+            this.parent = parent;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<String> candidates = new ArrayList<>();
+            List<DirectoryTask> subTasks = new ArrayList<>();
+
+            try {
+                fileKey = Files.readAttributes(dir, BasicFileAttributes.class).fileKey();
+                if (isLoop()) {
+                    return candidates;
+                }
+
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                    for (Path entry : entries) {
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                        }
+                        catch (IOException e) {
+                            // broken link
+                            continue;
+                        }
+
+                        String name = basePath.relativize(entry).toString();
+                        if (attrs.isDirectory()) {
+                            if (filter.acceptsDirectory(name)) {
+                                DirectoryTask subTask = new DirectoryTask(basePath, entry, filter, this);
+                                subTask.fork();
+                                subTasks.add(subTask);
+                            }
+                        }
+                        else if (attrs.isRegularFile() && isResource(entry.getFileName().toString())
+                                    && filter.acceptsFile(name)) {
+                            candidates.add(name);
+                        }
+                    }
+                }
+            }
+            catch (IOException e) {
+                if (parent == null) {
+                    throw new UncheckedIOException(e);
+                }
+
+                // unreadable directories are skipped like the DirectoryScanner does
+            }
+
+            for (DirectoryTask subTask : subTasks) {
+                candidates.addAll(subTask.join());
+            }
+
+            return candidates;
+        }
+
+        private boolean isLoop() throws IOException {
+            for (DirectoryTask ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+                if (fileKey != null ? fileKey.equals(ancestor.fileKey) : Files.isSameFile(dir, ancestor.dir)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
 }
@@ -22,6 +22,7 @@ import java.io.File;
 import java.util.Set;
 
 import org.primefaces.extensions.optimizerplugin.model.Aggregation;
+import org.primefaces.extensions.optimizerplugin.optimizer.CssCompressor;
 import org.primefaces.extensions.optimizerplugin.replacer.DataUriTokenResolver;
 
 /**
@@ -33,14 +34,28 @@ public class ResourcesSetCssAdapter extends ResourcesSetAdapter {
 
     private final DataUriTokenResolver projectDataUriTokenResolver;
 
+    private final CssCompressor.Engine cssEngine;
+
+    private final boolean gzip;
+
     public ResourcesSetCssAdapter(File inputDir, Set<File> files, DataUriTokenResolver projectDataUriTokenResolver,
                 Aggregation aggregation, String encoding, boolean failOnWarning,
-                String suffix) {
+                String suffix, CssCompressor.Engine cssEngine, boolean gzip) {
         super(inputDir, files, aggregation, encoding, failOnWarning, suffix);
         this.projectDataUriTokenResolver = projectDataUriTokenResolver;
+        this.cssEngine = cssEngine;
+        this.gzip = gzip;
     }
 
     public DataUriTokenResolver getProjectDataUriTokenResolver() {
         return projectDataUriTokenResolver;
     }
+
+    public CssCompressor.Engine getCssEngine() {
+        return cssEngine;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Persistent cache of optimized resources. Entries are keyed by a SHA-256 hash of the optimizer input and all
+ * options influencing the output, so a changed input or configuration never hits a stale entry. The plugin version
+ * is part of every key because a new compressor may produce a different output for the same input.
+ */
+public class ResultCache {
+
+    private static final String POM_PROPERTIES =
+                "/META-INF/maven/org.primefaces.extensions/resources-optimizer-maven-plugin/pom.properties";
+
+    private static final String PLUGIN_VERSION = readPluginVersion();
+
+    private final File cacheDir;
+
+    public ResultCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Computes the key for the given options and text input.
+     *
+     * @param options all options influencing the output
+     * @param content the input as passed to the optimizer
+     * @return hex encoded key
+     */
+    public String computeKey(String options, CharSequence content) {
+        return newHasher(options).putString(content, StandardCharsets.UTF_8).hash().toString();
+    }
+
+    /**
+     * Computes the key for the given options and the content of the given files.
+     *
+     * @param options all options influencing the output
+     * @param files files as passed to the optimizer
+     * @return hex encoded key
+     * @throws IOException if a file could not be read
+     */
+    public String computeKey(String options, Iterable<File> files) throws IOException {
+        Hasher hasher = newHasher(options);
+        for (File file : files) {
+            byte[] content = Files.toByteArray(file);
+            hasher.putInt(content.length).putBytes(content);
+        }
+
+        return hasher.hash().toString();
+    }
+
+    /**
+     * @param key key computed by one of the computeKey methods
+     * @return cached content or null if there is no entry for the key
+     * @throws IOException if the entry could not be read
+     */
+    public byte[] get(String key) throws IOException {
+        File cacheFile = getCacheFile(key);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        return Files.toByteArray(cacheFile);
+    }
+
+    /**
+     * Stores the content for the given key. The entry is written to a temporary file first and moved afterwards, so
+     * that concurrent builds never read a partially written entry.
+     *
+     * @param key key computed by one of the computeKey methods
+     * @param content optimized content
+     * @throws IOException if the entry could not be written
+     */
+    public void put(String key, byte[] content) throws IOException {
+        File cacheFile = getCacheFile(key);
+        Files.createParentDirs(cacheFile);
+
+        File tmpFile = File.createTempFile(key, ".tmp", cacheFile.getParentFile());
+        try {
+            Files.write(content, tmpFile);
+            java.nio.file.Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            java.nio.file.Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    private File getCacheFile(String key) {
+        // two-level layout to keep directories small
+        return new File(new File(cacheDir, key.substring(0, 2)), key);
+    }
+
+    private static Hasher newHasher(String options) {
+        return Hashing.sha256().newHasher()
+                    .putString(PLUGIN_VERSION, StandardCharsets.UTF_8).putChar('\n')
+                    .putString(options, StandardCharsets.UTF_8).putChar('\n');
+    }
+
+    private static String readPluginVersion() {
+        try (InputStream in = ResultCache.class.getResourceAsStream(POM_PROPERTIES)) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                return properties.getProperty("version", "");
+            }
+        }
+        catch (IOException e) {
+            // fall through
+        }
+
+        return "";
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.maven.plugin.logging.Log;
+import org.primefaces.extensions.optimizerplugin.model.SizeBudget;
+
+/**
+ * Checks the sizes of optimized resources against their budgets and against a baseline of previous sizes. The
+ * baseline is a properties file with the size and the gzipped size of every budget, meant to be committed along with
+ * the project, so that a change growing a bundle beyond its allowed growth fails the build. The gzipped size is
+ * computed with the built-in deflater, independent of whether gzipped files are written.
+ */
+public class SizeBudgets {
+
+    private static final String SIZE_SUFFIX = ".size";
+
+    private static final String GZIP_SIZE_SUFFIX = ".gzipSize";
+
+    private final File baselineFile;
+
+    private final int gzipLevel;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Map<String, Long> measured = new TreeMap<>();
+
+    /**
+     * @param baselineFile properties file with the sizes of a previous build
+     * @param gzipLevel compression level for the gzipped sizes
+     */
+    public SizeBudgets(File baselineFile, int gzipLevel) {
+        this.baselineFile = baselineFile;
+        this.gzipLevel = gzipLevel;
+    }
+
+    /**
+     * Adds files to a budget. Files added several times under the same name are counted once.
+     *
+     * @param name name of the budget in the baseline
+     * @param budget limits of the budget
+     * @param files optimized files, missing files are ignored
+     */
+    public synchronized void add(String name, SizeBudget budget, Collection<File> files) {
+        entries.computeIfAbsent(name, key -> new Entry(budget)).files.addAll(files);
+    }
+
+    /**
+     * @return true if no budget has been added
+     */
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Measures all budgets and compares them with their limits and, unless skipped, with the baseline.
+     *
+     * @param log log receiving the measured sizes
+     * @param checkGrowth false to skip the comparison with the baseline
+     * @return messages of exceeded budgets
+     * @throws IOException if an optimized file could not be read
+     */
+    public synchronized List<String> check(Log log, boolean checkGrowth) throws IOException {
+        Properties baseline = loadBaseline();
+        List<String> exceeded = new ArrayList<>();
+
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            String name = mapEntry.getKey();
+            SizeBudget budget = mapEntry.getValue().budget;
+
+            long size = 0;
+            long gzipSize = 0;
+            for (File file : mapEntry.getValue().files) {
+                if (file.isFile()) {
+                    byte[] content = Files.readAllBytes(file.toPath());
+                    size += content.length;
+                    gzipSize += Precompressor.gzippedSize(content, gzipLevel);
+                }
+            }
+
+            measured.put(name + SIZE_SUFFIX, size);
+            measured.put(name + GZIP_SIZE_SUFFIX, gzipSize);
+            log.info("Size budget " + name + ": " + size + " bytes, " + gzipSize + " bytes gzipped");
+
+            checkLimit(exceeded, name, "size", size, budget.getMaxSize());
+            checkLimit(exceeded, name, "gzipped size", gzipSize, budget.getMaxGzipSize());
+            if (checkGrowth && budget.getMaxGrowth() > 0) {
+                checkGrowth(exceeded, name, "size", size, baseline.getProperty(name + SIZE_SUFFIX),
+                            budget.getMaxGrowth());
+                checkGrowth(exceeded, name, "gzipped size", gzipSize,
+                            baseline.getProperty(name + GZIP_SIZE_SUFFIX), budget.getMaxGrowth());
+            }
+        }
+
+        return exceeded;
+    }
+
+    /**
+     * Updates the baseline with the sizes measured by {@link #check(Log, boolean)}. Entries of budgets which were not
+     * measured, e.g. of other executions, are kept. Entries are sorted and the file has no timestamp, so that it only
+     * changes if sizes change.
+     *
+     * @throws IOException if the baseline could not be read or written
+     */
+    public synchronized void saveBaseline() throws IOException {
+        Properties baseline = loadBaseline();
+        Map<String, String> merged = new TreeMap<>();
+        for (String key : baseline.stringPropertyNames()) {
+            merged.put(key, baseline.getProperty(key));
+        }
+
+        for (Map.Entry<String, Long> mapEntry : measured.entrySet()) {
+            merged.put(mapEntry.getKey(), String.valueOf(mapEntry.getValue()));
+        }
+
+        Files.createDirectories(baselineFile.getAbsoluteFile().getParentFile().toPath());
+        try (Writer out = Files.newBufferedWriter(baselineFile.toPath(), StandardCharsets.ISO_8859_1)) {
+            out.write("# Sizes of optimized resources in bytes, checked against the maxGrowth of their size budgets\n");
+            for (Map.Entry<String, String> mapEntry : merged.entrySet()) {
+                out.write(escapeKey(mapEntry.getKey()) + "=" + mapEntry.getValue() + "\n");
+            }
+        }
+    }
+
+    private Properties loadBaseline() throws IOException {
+        Properties baseline = new Properties();
+        if (baselineFile.isFile()) {
+            try (InputStream in = Files.newInputStream(baselineFile.toPath())) {
+                baseline.load(in);
+            }
+        }
+
+        return baseline;
+    }
+
+    private static void checkLimit(List<String> exceeded, String name, String kind, long size, long limit) {
+        if (limit > 0 && size > limit) {
+            exceeded.add("Size budget " + name + " exceeded: " + kind + " " + size + " bytes > " + limit + " bytes");
+        }
+    }
+
+    private static void checkGrowth(List<String> exceeded, String name, String kind, long size, String baseline,
+                int maxGrowth) {
+        long baselineSize;
+        try {
+            baselineSize = baseline != null ? Long.parseLong(baseline.trim()) : 0;
+        }
+        catch (NumberFormatException e) {
+            baselineSize = 0;
+        }
+
+        // budgets without a baseline entry are new and can't have grown
+        if (baselineSize > 0 && (size - baselineSize) * 100 > baselineSize * maxGrowth) {
+            exceeded.add(String.format(Locale.ROOT,
+                        "Size budget %s exceeded: %s grew by %.1f%% from %d to %d bytes, allowed are %d%%", name, kind,
+                        (size - baselineSize) * 100.0 / baselineSize, baselineSize, size, maxGrowth));
+        }
+    }
+
+    /**
+     * Escapes the characters with a special meaning in keys of properties files.
+     */
+    private static String escapeKey(String key) {
+        StringBuilder sb = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '\\' || c == ' ' || c == ':' || c == '=' || c == '#' || c == '!') {
+                sb.append('\\');
+            }
+
+            if (c > 0x7e || c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            else {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static final class Entry {
+
+        private final SizeBudget budget;
+
+        private final Set<File> files = new LinkedHashSet<>();
+
+        private Entry(SizeBudget budget) {
+            this.budget = budget;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Durations and sizes of the phases of an execution, recorded per file from any thread. The report is written as
+ * JSON and CSV and summarized in the log with the slowest files.
+ * <p>
+ * Durations are measured on the thread doing the work, so the totals of a phase add up the time of all threads and may
+ * exceed the wall time of the build. Data URI resolution happens while CSS files are read and is part of their CSS
+ * compression time as well.
+ */
+public class TimingReport {
+
+    /**
+     * Measured phases.
+     */
+    public enum Phase {
+        /** walking an input directory, recorded per directory without bytes */
+        SCAN(false),
+        /** encoding an image as Data URI, recorded per image and nested in CSS_COMPRESSION */
+        DATA_URI(false),
+        CSS_COMPRESSION(true),
+        JS_COMPILATION(true),
+        AGGREGATION(true),
+        SOURCE_MAP(true),
+        GZIP(true);
+
+        private final boolean resource;
+
+        Phase(boolean resource) {
+            this.resource = resource;
+        }
+
+        /**
+         * @return true if the phase is recorded per optimized resource and counts for the slowest files
+         */
+        public boolean isResource() {
+            return resource;
+        }
+    }
+
+    public static final String JSON_FILE = "resources-optimizer-timing.json";
+
+    public static final String CSV_FILE = "resources-optimizer-timing.csv";
+
+    private static final int SLOWEST_FILES = 10;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Records a finished step of a phase.
+     *
+     * @param phase phase of the step
+     * @param file processed file or directory
+     * @param startNanos {@link System#nanoTime()} when the step started
+     * @param bytes processed bytes
+     */
+    public void record(Phase phase, File file, long startNanos, long bytes) {
+        Entry entry = new Entry(phase, file.getPath(), System.nanoTime() - startNanos, bytes);
+        synchronized (entries) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Writes the report as {@value #JSON_FILE} and {@value #CSV_FILE}.
+     *
+     * @param dir output directory
+     * @throws IOException
+     */
+    public void write(File dir) throws IOException {
+        List<Entry> snapshot = getEntries();
+        Files.createDirectories(dir.toPath());
+
+        try (Writer out = Files.newBufferedWriter(new File(dir, JSON_FILE).toPath(), StandardCharsets.UTF_8)) {
+            out.write("{\n  \"phases\": [");
+            String separator = "\n";
+            for (Total total : getPhaseTotals(snapshot).values()) {
+                out.write(separator);
+                out.write("    {\"phase\": \"" + total.name + "\", \"count\": " + total.count + ", \"millis\": "
+                            + millis(total.nanos) + ", \"bytes\": " + total.bytes + "}");
+                separator = ",\n";
+            }
+
+            out.write("\n  ],\n  \"files\": [");
+            separator = "\n";
+            for (Entry entry : snapshot) {
+                out.write(separator);
+                out.write("    {\"phase\": \"" + entry.phase + "\", \"file\": \"" + escapeJson(entry.path)
+                            + "\", \"millis\": " + millis(entry.nanos) + ", \"bytes\": " + entry.bytes + "}");
+                separator = ",\n";
+            }
+
+            out.write("\n  ]\n}\n");
+        }
+
+        try (Writer out = Files.newBufferedWriter(new File(dir, CSV_FILE).toPath(), StandardCharsets.UTF_8)) {
+            out.write("phase,file,millis,bytes\n");
+            for (Entry entry : snapshot) {
+                out.write(entry.phase + "," + escapeCsv(entry.path) + "," + millis(entry.nanos) + "," + entry.bytes
+                            + "\n");
+            }
+        }
+    }
+
+    /**
+     * Logs the totals of every phase and the slowest resources, summed over all their phases.
+     *
+     * @param log log of the execution
+     */
+    public void logSummary(Log log) {
+        List<Entry> snapshot = getEntries();
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        for (Total total : getPhaseTotals(snapshot).values()) {
+            log.info(String.format(Locale.ROOT, "%-16s %6d x %10s ms %12d bytes", total.name, total.count,
+                        millis(total.nanos), total.bytes));
+        }
+
+        Map<String, Total> files = new LinkedHashMap<>();
+        for (Entry entry : snapshot) {
+            if (entry.phase.isResource()) {
+                files.computeIfAbsent(entry.path, Total::new).add(entry);
+            }
+        }
+
+        List<Total> slowest = new ArrayList<>(files.values());
+        slowest.sort(Comparator.comparingLong((Total total) -> total.nanos).reversed());
+        if (slowest.isEmpty()) {
+            return;
+        }
+
+        log.info("Slowest files:");
+        for (Total total : slowest.subList(0, Math.min(SLOWEST_FILES, slowest.size()))) {
+            log.info(String.format(Locale.ROOT, "%10s ms  %s", millis(total.nanos), total.name));
+        }
+    }
+
+    private List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<>(entries);
+        }
+    }
+
+    private static Map<Phase, Total> getPhaseTotals(List<Entry> snapshot) {
+        Map<Phase, Total> totals = new EnumMap<>(Phase.class);
+        for (Entry entry : snapshot) {
+            totals.computeIfAbsent(entry.phase, phase -> new Total(phase.name())).add(entry);
+        }
+
+        return totals;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static String escapeJson(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            }
+            else {
+                sb.append(c);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static final class Entry {
+
+        private final Phase phase;
+
+        private final String path;
+
+        private final long nanos;
+
+        private final long bytes;
+
+        private Entry(Phase phase, String path, long nanos, long bytes) {
+            this.phase = phase;
+            this.path = path;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Total {
+
+        private final String name;
+
+        private int count;
+
+        private long nanos;
+
+        private long bytes;
+
+        private Total(String name) {
+            this.name = name;
+        }
+
+        private void add(Entry entry) {
+            count++;
+            nanos += entry.nanos;
+            bytes += entry.bytes;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011-2026 PrimeFaces Extensions
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * $Id$
+ */
+
+package org.primefaces.extensions.optimizerplugin.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Fork/join based pool running independent optimization tasks. Tasks may submit nested tasks to the same pool
+ * (e.g. sub-folders of an aggregation) without risking a deadlock because joining workers help executing queued
+ * tasks. With a parallelism of 1 all tasks are executed sequentially in the calling thread.
+ */
+public class WorkerPool implements AutoCloseable {
+
+    private final int parallelism;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param threads number of worker threads, a value less than 1 means the number of available processors
+     */
+    public WorkerPool(int threads) {
+        parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        if (parallelism > 1) {
+            // workers must see the plugin class realm, not the system class loader
+            final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("resources-optimizer-" + thread.getPoolIndex());
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }, null, false);
+        }
+        else {
+            pool = null;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isParallel() {
+        return pool != null;
+    }
+
+    /**
+     * Executes all tasks and waits for their completion.
+     *
+     * @param tasks tasks to be executed
+     * @return results in the same order as the tasks
+     * @throws MojoExecutionException the failure of the first failed task in the given order
+     */
+    public <T> List<T> invokeAll(List<? extends Callable<T>> tasks) throws MojoExecutionException {
+        final List<Task<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(new Task<>(task));
+        }
+
+        if (pool == null || wrapped.size() < 2) {
+            for (Task<T> task : wrapped) {
+                task.compute();
+                if (task.failure != null) {
+                    break;
+                }
+            }
+        }
+        else if (ForkJoinTask.getPool() == pool) {
+            forkAndJoin(wrapped);
+        }
+        else {
+            pool.invoke(ForkJoinTask.adapt(() -> forkAndJoin(wrapped)));
+        }
+
+        final List<T> results = new ArrayList<>(wrapped.size());
+        for (Task<T> task : wrapped) {
+            if (task.failure instanceof MojoExecutionException) {
+                throw (MojoExecutionException) task.failure;
+            }
+            else if (task.failure != null) {
+                throw new MojoExecutionException("Resources optimization failure: "
+                            + task.failure.getLocalizedMessage(), task.failure);
+            }
+
+            results.add(task.result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Executes a fork/join task in the pool and waits for its result. Subtasks forked by the task run in the pool too.
+     *
+     * @param task task to be executed
+     * @return result of the task
+     */
+    public <T> T invoke(ForkJoinTask<T> task) {
+        if (pool == null || ForkJoinTask.getPool() == pool) {
+            return task.invoke();
+        }
+
+        return pool.invoke(task);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static <T> void forkAndJoin(List<Task<T>> tasks) {
+        for (int i = tasks.size() - 1; i > 0; i--) {
+            tasks.get(i).fork();
+        }
+
+        // run the first task in the current worker, then help with the remaining ones
+        tasks.get(0).compute();
+        for (int i = 1; i < tasks.size(); i++) {
+            tasks.get(i).join();
+        }
+    }
+
+    private static final class Task<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Callable<T> callable;
+
+        private transient T result;
+
+        private Exception failure;
+
+        private Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                result = callable.call();
+            }
+            catch (Exception e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.primefaces.extensions.optimizerplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates a deterministic corpus of CSS and JavaScript files. The files are spread over a tree of subdirectories, so
+ * that every top-level directory can be aggregated in subDirMode. CSS rules reference images by relative url() calls
+ * which can be converted to Data URIs.
+ */
+final class CorpusGenerator {
+
+    static final String IMAGES_DIR = "images";
+
+    private static final int IMAGES = 8;
+
+    private static final int IMAGE_SIZE = 512;
+
+    private final long seed;
+
+    private int cssFiles = 100;
+
+    private int jsFiles = 100;
+
+    private int fileSize = 8 * 1024;
+
+    private double urlDensity = 0.25;
+
+    private int depth = 2;
+
+    private int fanOut = 3;
+
+    CorpusGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param cssFiles number of CSS files
+     * @param jsFiles number of JavaScript files
+     */
+    CorpusGenerator files(int cssFiles, int jsFiles) {
+        this.cssFiles = cssFiles;
+        this.jsFiles = jsFiles;
+        return this;
+    }
+
+    /**
+     * @param fileSize approximate size of every file in bytes
+     */
+    CorpusGenerator fileSize(int fileSize) {
+        this.fileSize = fileSize;
+        return this;
+    }
+
+    /**
+     * @param urlDensity fraction of CSS rules with an image reference, from 0 to 1
+     */
+    CorpusGenerator urlDensity(double urlDensity) {
+        this.urlDensity = urlDensity;
+        return this;
+    }
+
+    /**
+     * @param depth nesting depth of the directories containing the files, 0 puts all files into the root
+     * @param fanOut number of subdirectories of every directory
+     */
+    CorpusGenerator directories(int depth, int fanOut) {
+        this.depth = depth;
+        this.fanOut = fanOut;
+        return this;
+    }
+
+    /**
+     * Replaces the given directory with a new corpus.
+     *
+     * @param root root directory of the corpus
+     * @return generated CSS and JavaScript files
+     * @throws IOException
+     */
+    List<File> generate(Path root) throws IOException {
+        delete(root);
+        Random random = new Random(seed);
+
+        Path images = Files.createDirectories(root.resolve(IMAGES_DIR));
+        for (int i = 0; i < IMAGES; i++) {
+            byte[] content = new byte[IMAGE_SIZE];
+            random.nextBytes(content);
+            Files.write(images.resolve("img" + i + ".png"), content);
+        }
+
+        List<String> dirs = new ArrayList<>();
+        collectDirs("", 0, dirs);
+
+        List<File> files = new ArrayList<>(cssFiles + jsFiles);
+        for (int i = 0; i < cssFiles + jsFiles; i++) {
+            String dir = dirs.get(i % dirs.size());
+            boolean css = i < cssFiles;
+            Path file = Files.createDirectories(root.resolve(dir)).resolve((css ? "style" : "script") + i
+                        + (css ? ".css" : ".js"));
+            String content = css ? css(random, i, relativeRoot(dir)) : js(random, i);
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            files.add(file.toFile());
+        }
+
+        return files;
+    }
+
+    static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private void collectDirs(String parent, int level, List<String> dirs) {
+        if (level == depth) {
+            dirs.add(parent);
+            return;
+        }
+
+        for (int i = 0; i < fanOut; i++) {
+            collectDirs(parent + "d" + level + "_" + i + "/", level + 1, dirs);
+        }
+    }
+
+    private static String relativeRoot(String dir) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < dir.length(); i++) {
+            if (dir.charAt(i) == '/') {
+                sb.append("../");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private String css(Random random, int index, String root) {
+        StringBuilder sb = new StringBuilder(fileSize + 256);
+        sb.append("/* generated stylesheet ").append(index).append(" */\n");
+        for (int rule = 0; sb.length() < fileSize; rule++) {
+            sb.append(".c").append(index).append('_').append(rule).append(" > a:hover, #id")
+                        .append(random.nextInt(1000)).append(" span {\n");
+            sb.append("    color: #").append(rule % 3 == 0 ? "FFFFFF" : "AABBCC").append(";\n");
+            sb.append("    margin: 0px 0px 0px 0px;\n");
+            sb.append("    padding: 0.50em 0 0.0em ").append(random.nextInt(20)).append("px;\n");
+            if (random.nextDouble() < urlDensity) {
+                sb.append("    background: url(\"").append(root).append(IMAGES_DIR).append("/img")
+                            .append(random.nextInt(IMAGES)).append(".png\") no-repeat;\n");
+            }
+
+            sb.append("    font-family: \"Helvetica Neue\", Arial, sans-serif;\n");
+            sb.append("}\n\n");
+        }
+
+        return sb.toString();
+    }
+
+    private String js(Random random, int index) {
+        StringBuilder sb = new StringBuilder(fileSize + 512);
+        for (int function = 0; sb.length() < fileSize; function++) {
+            String name = "module" + index + "Function" + function;
+            sb.append("/**\n * Computes something for ").append(name).append(".\n */\n");
+            sb.append("function ").append(name).append("(firstArgument, secondArgument) {\n");
+            sb.append("    var result = firstArgument * ").append(random.nextInt(100)).append(";\n");
+            sb.append("    for (var index = 0; index < secondArgument.length; index++) {\n");
+            sb.append("        if (secondArgument[index] !== undefined) {\n");
+            sb.append("            result += secondArgument[index].length;\n");
+            sb.append("        }\n");
+            sb.append("    }\n");
+            sb.append("    return result;\n");
+            sb.append("}\n");
+            sb.append("window.").append(name).append(" = ").append(name).append(";\n\n");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,183 @@
+package org.primefaces.extensions.optimizerplugin;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.primefaces.extensions.optimizerplugin.model.Aggregation;
+import org.primefaces.extensions.optimizerplugin.model.ResourcesSet;
+
+/**
+ * Scaling test running the whole plugin against generated corpora of growing file count and file size. Wall time,
+ * peak heap and files per second of every run are printed and written to target/scaling-results.csv, so that
+ * regressions in scanning, aggregation or compression show up as numbers.
+ * <p>
+ * The test is skipped unless enabled, e.g. mvn test -Dtest=ResourcesOptimizerMojoScalingTest -Dscaling=true
+ * -Dscaling.files=100,1000,5000 -Dscaling.fileSizes=2048,32768
+ */
+@EnabledIfSystemProperty(named = "scaling", matches = "true")
+class ResourcesOptimizerMojoScalingTest {
+
+    /**
+     * How the generated files are optimized.
+     */
+    enum Mode {
+        /** every file in place */
+        FILES,
+        /** all CSS and all JavaScript files into one file each */
+        AGGREGATION,
+        /** every top-level directory into one file */
+        SUBDIR
+    }
+
+    private static final Path WORK_DIR = Paths.get("target/scaling");
+
+    private static final Path RESULTS = Paths.get("target/scaling-results.csv");
+
+    public static Stream<Arguments> provideScenarios() {
+        List<Arguments> scenarios = new ArrayList<>();
+        for (Mode mode : Mode.values()) {
+            for (int files : getInts("scaling.files", "100,1000")) {
+                for (int fileSize : getInts("scaling.fileSizes", "2048,32768")) {
+                    scenarios.add(Arguments.of(mode, files, fileSize));
+                }
+            }
+        }
+
+        return scenarios.stream();
+    }
+
+    @BeforeAll
+    public static void writeHeader() throws IOException {
+        Files.createDirectories(RESULTS.getParent());
+        Files.write(RESULTS, List.of("mode,files,fileSize,inputBytes,wallMillis,peakHeapBytes,filesPerSecond"),
+                    StandardCharsets.UTF_8);
+    }
+
+    @ParameterizedTest(name = "{0} {1} files of {2} bytes")
+    @MethodSource("provideScenarios")
+    public void scale(Mode mode, int files, int fileSize) throws Exception {
+        // Arrange
+        Path dir = WORK_DIR.resolve(mode + "-" + files + "-" + fileSize).toAbsolutePath();
+        List<File> corpus = new CorpusGenerator(files).files(files / 2, files - files / 2).fileSize(fileSize)
+                    .urlDensity(0.25).directories(2, 3).generate(dir);
+        long inputBytes = 0;
+        for (File file : corpus) {
+            inputBytes += file.length();
+        }
+
+        ResourcesOptimizerMojo mojo = createMojo(dir, mode);
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .collect(Collectors.toList());
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        // Act
+        long start = System.nanoTime();
+        mojo.execute();
+        long wallNanos = System.nanoTime() - start;
+
+        // the sum of the peaks of all pools is an upper bound of the peak heap
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        // Assert
+        double filesPerSecond = corpus.size() / Math.max(wallNanos / 1e9, 1e-9);
+        String row = String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%.1f", mode, files, fileSize, inputBytes,
+                    wallNanos / 1_000_000, peakHeap, filesPerSecond);
+        System.out.println("scaling: " + row);
+        Files.write(RESULTS, List.of(row), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertTrue(mojo.resFound, "Resources should be found");
+        CorpusGenerator.delete(dir);
+    }
+
+    private static ResourcesOptimizerMojo createMojo(Path dir, Mode mode) throws ReflectiveOperationException {
+        ResourcesOptimizerMojo mojo = new ResourcesOptimizerMojo();
+        mojo.setLog(new SystemStreamLog() {
+
+            @Override
+            public void info(CharSequence content) {
+                // one line per file would dominate the wall time
+            }
+        });
+
+        // defaults of the plugin parameters
+        set(mojo, "inputDir", dir.toFile());
+        set(mojo, "imagesDir", dir.toString());
+        set(mojo, "compilationLevel", "SIMPLE_OPTIMIZATIONS");
+        set(mojo, "warningLevel", "QUIET");
+        set(mojo, "encoding", "UTF-8");
+        set(mojo, "cssEngine", "REGEX");
+        set(mojo, "dataUriMaxSize", 32768L);
+        set(mojo, "languageIn", "ECMASCRIPT3");
+        set(mojo, "languageOut", "NO_TRANSPILE");
+        set(mojo, "gzipLevel", 9);
+        set(mojo, "gzipMinSize", 256L);
+        set(mojo, "gzipMinSavings", 5);
+        set(mojo, "cacheDir", dir.resolve("cache").toFile());
+        set(mojo, "smapOutputDir", dir.resolve("sourcemap").toString());
+        set(mojo, "threads", Integer.getInteger("scaling.threads", 0));
+        set(mojo, "useDataUri", true);
+
+        if (mode == Mode.AGGREGATION) {
+            set(mojo, "resourcesSets", List.of(aggregatedSet(dir, "css"), aggregatedSet(dir, "js")));
+        }
+        else if (mode == Mode.SUBDIR) {
+            Aggregation aggregation = new Aggregation();
+            aggregation.setSubDirMode(true);
+            set(mojo, "aggregations", new Aggregation[] {aggregation});
+        }
+
+        return mojo;
+    }
+
+    private static ResourcesSet aggregatedSet(Path dir, String extension) {
+        Aggregation aggregation = new Aggregation();
+        aggregation.setOutputFile(dir.resolve("all." + extension).toFile());
+
+        ResourcesSet resourcesSet = new ResourcesSet();
+        resourcesSet.setIncludes(new String[] {"**/*." + extension});
+        resourcesSet.setAggregations(new Aggregation[] {aggregation});
+        resourcesSet.setUseDataUri(true);
+        return resourcesSet;
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static int[] getInts(String property, String defaultValue) {
+        return Stream.of(System.getProperty(property, defaultValue).split(","))
+                    .map(String::trim)
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+    }
+}
@@ -1,18 +1,31 @@
 package org.primefaces.extensions.optimizerplugin.optimizer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.primefaces.extensions.optimizerplugin.model.Aggregation;
+import org.primefaces.extensions.optimizerplugin.util.ResourcesSetJsAdapter;
+
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.CompilerOptions.LanguageMode;
+import com.google.javascript.jscomp.WarningLevel;
 
 public class ClosureCompilerOptimizerTest {
 
@@ -35,4 +48,70 @@ public class ClosureCompilerOptimizerTest {
 		assertTrue(gzipped.length() > 0);
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void aggregatePrependedFileMatchedByIncludes(@TempDir Path dir) throws Exception {
+		// Arrange
+		File prepended = write(dir.resolve("a.js"), "window.a = 1;");
+		File file = write(dir.resolve("b.js"), "window.b = 2;");
+		ResourcesSetJsAdapter rsa = createAdapter(dir, dir.resolve("all.js"), prepended, prepended, file);
+
+		// Act
+		new ClosureCompilerOptimizer(new SystemStreamLog()).optimize(rsa);
+
+		// Assert
+		String output = read(rsa.getAggregation().getOutputFile());
+		assertEquals(1, count(output, "window.a"), "The prepended file should be compiled once: " + output);
+		assertTrue(output.indexOf("window.a") < output.indexOf("window.b"),
+				"The prepended file should come first: " + output);
+	}
+
+	@Test
+	public void compileChunksWithPrependedFileMatchedByIncludes(@TempDir Path dir) throws Exception {
+		// Arrange
+		File prepended = write(dir.resolve("a.js"), "window.a = 1;");
+		File first = write(dir.resolve("b.js"), "window.b = 2;");
+		File second = write(dir.resolve("c.js"), "window.c = 3;");
+		ResourcesSetJsAdapter firstRsa = createAdapter(dir, dir.resolve("first.js"), prepended, prepended, first);
+		ResourcesSetJsAdapter secondRsa = createAdapter(dir, dir.resolve("second.js"), prepended, second);
+
+		// Act
+		new ClosureCompilerOptimizer(new SystemStreamLog()).optimizeChunks(List.of(firstRsa, secondRsa));
+
+		// Assert
+		String firstOutput = read(firstRsa.getAggregation().getOutputFile());
+		String secondOutput = read(secondRsa.getAggregation().getOutputFile());
+		assertEquals(1, count(firstOutput, "window.a"), "The prepended file should be compiled once: " + firstOutput);
+		assertTrue(firstOutput.contains("window.b"), firstOutput);
+		assertTrue(secondOutput.contains("window.a") && secondOutput.contains("window.c"), secondOutput);
+	}
+
+	private static ResourcesSetJsAdapter createAdapter(Path dir, Path outputFile, File prependedFile, File... files) {
+		Aggregation aggregation = new Aggregation();
+		aggregation.setOutputFile(outputFile.toFile());
+		aggregation.setPrependedFile(prependedFile);
+		aggregation.setRemoveIncluded(false);
+		aggregation.setRemoveEmptyDirectories(false);
+
+		return new ResourcesSetJsAdapter(dir.toFile(), new LinkedHashSet<>(Arrays.asList(files)), aggregation,
+				CompilationLevel.SIMPLE_OPTIMIZATIONS, WarningLevel.QUIET, null, "UTF-8", false, null,
+				LanguageMode.ECMASCRIPT_2015, LanguageMode.NO_TRANSPILE, false, false, false);
+	}
+
+	private static File write(Path path, String content) throws IOException {
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toFile();
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+			count++;
+		}
+
+		return count;
+	}
+}
@@ -31,9 +31,19 @@ class CssCompressorTest {
     @ParameterizedTest
     @MethodSource("provideCssFiles")
     public void compress(Path cssFile) throws IOException {
+        assertCompressed(cssFile, CssCompressor.Engine.REGEX);
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideCssFiles")
+    public void compressWithTokenizer(Path cssFile) throws IOException {
+        assertCompressed(cssFile, CssCompressor.Engine.TOKENIZER);
+    }
+
+    private void assertCompressed(Path cssFile, CssCompressor.Engine engine) throws IOException {
         // Arrange
         Reader reader = new InputStreamReader(Files.newInputStream(cssFile));
-        CssCompressor compressor = new CssCompressor(reader);
+        CssCompressor compressor = new CssCompressor(reader, engine);
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
 
         // Act
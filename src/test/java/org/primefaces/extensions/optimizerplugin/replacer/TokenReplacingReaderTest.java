@@ -0,0 +1,156 @@
+package org.primefaces.extensions.optimizerplugin.replacer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Token replacing readers test checks the matching at the end of the source and across chunk boundaries of the source
+ * and of the callers.
+ */
+class TokenReplacingReaderTest {
+
+    private static final Log LOG = new SystemStreamLog();
+
+    private static final TokenResolver RESOLVER = token -> token.startsWith("missing") ? null : "R(" + token + ")";
+
+    private static final int[] SOURCE_READ_LENGTHS = {1, 3, 8192};
+
+    private static final int[] READ_LENGTHS = {1, 2, 5, 4096};
+
+    @Test
+    public void keepUnterminatedUrlAtEndOfSource() throws IOException {
+        // Arrange
+        String css = ".a{background: url(a.png";
+
+        // Act
+        String result = readAll(urlReader(css, 8192), 4096);
+
+        // Assert
+        assertEquals(css, result, "An unterminated url() should be passed through");
+        assertTrue(result.indexOf('\0') < 0, "No NUL chars should be appended");
+    }
+
+    @Test
+    public void replaceShortUrlAtEndOfSource() throws IOException {
+        // Arrange
+        String css = " url(a.png)";
+
+        // Act
+        String result = readAll(urlReader(css, 8192), 4096);
+
+        // Assert
+        assertEquals(" url(R(a.png))", result, "A url() shorter than the start window should be resolved");
+    }
+
+    @Test
+    public void keepFragmentOfLongUrl() throws IOException {
+        // Arrange
+        String css = ".a{filter: url(images/filters/effects.svg#blur)}.b{color:red}";
+
+        // Act
+        String result = readAll(urlReader(css, 8192), 4096);
+
+        // Assert
+        assertEquals(css, result, "A fragment after the start window should cancel the url() and be kept");
+    }
+
+    @Test
+    public void replaceUrlsAcrossChunkBoundaries() throws IOException {
+        // Arrange
+        StringBuilder css = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            // shift the tokens against the chunk boundaries
+            String padding = "x".repeat(i % 13);
+            String name = (i % 7 == 0 ? "missing" : "img") + i + ".png";
+            css.append(".c").append(i).append("{a:").append(padding).append(" url(").append(name).append(")}\n");
+            expected.append(".c").append(i).append("{a:").append(padding).append(" url(")
+                        .append(name.startsWith("missing") ? name : "R(" + name + ")").append(")}\n");
+        }
+
+        for (int sourceReadLength : SOURCE_READ_LENGTHS) {
+            for (int readLength : READ_LENGTHS) {
+                // Act
+                String result = readAll(urlReader(css.toString(), sourceReadLength), readLength);
+
+                // Assert
+                assertEquals(expected.toString(), result,
+                            "Source read length " + sourceReadLength + ", read length " + readLength);
+            }
+        }
+    }
+
+    @Test
+    public void replaceMarkedTokensAcrossChunkBoundaries() throws IOException {
+        // Arrange
+        StringBuilder css = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            String padding = "#".repeat(i % 11);
+            String token = "'" + (i % 7 == 0 ? "missing" : "img") + i + ".png'";
+            css.append(".c{a:url(").append(padding).append("#{resource[").append(token).append("]})}\n");
+            expected.append(".c{a:url(").append(padding)
+                        .append(token.startsWith("'missing") ? "#{resource[" + token + "]}" : "R(" + token + ")")
+                        .append(")}\n");
+        }
+
+        // an unterminated token at the end is passed through
+        css.append("#{resource['a.png'");
+        expected.append("#{resource['a.png'");
+
+        for (int sourceReadLength : SOURCE_READ_LENGTHS) {
+            for (int readLength : READ_LENGTHS) {
+                // Act
+                Reader reader = new FixedMarkerTokenReplacingReader(LOG, token -> token.startsWith("'missing") ? null
+                            : "R(" + token + ")", new ShortReader(css.toString(), sourceReadLength), "#{resource[",
+                            "]}");
+                String result = readAll(reader, readLength);
+
+                // Assert
+                assertEquals(expected.toString(), result,
+                            "Source read length " + sourceReadLength + ", read length " + readLength);
+            }
+        }
+    }
+
+    private static Reader urlReader(String css, int sourceReadLength) {
+        return new CSSRelativeURLReplacingReader(LOG, RESOLVER, new ShortReader(css, sourceReadLength));
+    }
+
+    private static String readAll(Reader reader, int readLength) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] chars = new char[readLength];
+        int read;
+        while ((read = reader.read(chars, 0, readLength)) != -1) {
+            sb.append(chars, 0, read);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns at most the given number of chars per read, like a slow stream.
+     */
+    private static final class ShortReader extends StringReader {
+
+        private final int maxLength;
+
+        private ShortReader(String s, int maxLength) {
+            super(s);
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return super.read(cbuf, off, Math.min(len, maxLength));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.primefaces.extensions.optimizerplugin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.primefaces.extensions.optimizerplugin.replacer.DataUriTokenResolver;
+
+/**
+ * Build state test checks the stale detection of incremental builds the way the plugin records and checks units.
+ */
+class BuildStateTest {
+
+    @Test
+    public void staleChangedInputOrConfiguration(@TempDir Path dir) throws IOException {
+        // Arrange
+        File stateFile = dir.resolve("state/build-state.properties").toFile();
+        File cssFile = write(dir.resolve("a.css"), "a { color: red; }");
+        String key = BuildState.computeKey("css|UTF-8|true");
+
+        BuildState first = new BuildState(stateFile);
+        first.load();
+        assertFalse(isUpToDate(first, key, List.of(cssFile)), "A unit without state should be stale");
+        update(first, key, List.of(cssFile), List.of());
+        first.save();
+
+        // Act
+        BuildState second = new BuildState(stateFile);
+        second.load();
+        boolean unchanged = isUpToDate(second, key, List.of(cssFile));
+        boolean configurationChanged = isUpToDate(second, BuildState.computeKey("css|UTF-8|false"), List.of(cssFile));
+        write(dir.resolve("a.css"), "a { color: blue; }");
+        boolean inputChanged = isUpToDate(second, key, List.of(cssFile));
+
+        // Assert
+        assertTrue(unchanged, "An unchanged unit should be up to date");
+        assertFalse(configurationChanged, "A changed configuration should be stale");
+        assertFalse(inputChanged, "A changed input should be stale");
+    }
+
+    @Test
+    public void staleChangedDataUriImage(@TempDir Path dir) throws IOException {
+        // Arrange
+        File stateFile = dir.resolve("build-state.properties").toFile();
+        Path imagesDir = Files.createDirectories(dir.resolve("images"));
+        write(imagesDir.resolve("logo.png"), "png");
+        File cssFile = write(dir.resolve("a.css"), "a { background: url(#{resource['logo.png']}); }");
+        String key = BuildState.computeKey("css|UTF-8|true");
+
+        // images are recorded while the CSS file is optimized
+        Map<File, Set<File>> imageFiles = new ConcurrentHashMap<>();
+        DataUriTokenResolver resolver = new DataUriTokenResolver(new SystemStreamLog(), List.of(imagesDir.toFile()));
+        resolver.setDependencies(imageFiles);
+        DataUriTokenResolver cssFileResolver = resolver.forCssFile(cssFile);
+        assertNotNull(cssFileResolver.resolveToken("'logo.png'"), "The existing image should be resolved");
+        cssFileResolver.resolveToken("'missing.png'");
+        assertEquals(2, imageFiles.get(cssFile).size(), "Existing and missing images should be recorded");
+
+        BuildState first = new BuildState(stateFile);
+        first.load();
+        update(first, key, List.of(cssFile), imageFiles.get(cssFile));
+        first.save();
+
+        // the dependencies of an up to date unit are kept for the next build
+        BuildState second = new BuildState(stateFile);
+        second.load();
+        assertTrue(isUpToDate(second, key, List.of(cssFile)), "An unchanged unit should be up to date");
+        second.save();
+
+        // Act
+        BuildState third = new BuildState(stateFile);
+        third.load();
+        boolean unchanged = isUpToDate(third, key, List.of(cssFile));
+        write(imagesDir.resolve("missing.png"), "png");
+        boolean imageAdded = isUpToDate(third, key, List.of(cssFile));
+        Files.delete(imagesDir.resolve("missing.png"));
+        boolean imageRemoved = isUpToDate(third, key, List.of(cssFile));
+        write(imagesDir.resolve("logo.png"), "changed png");
+        boolean imageChanged = isUpToDate(third, key, List.of(cssFile));
+
+        // Assert
+        assertTrue(unchanged, "Dependencies should be kept by an up to date build");
+        assertFalse(imageAdded, "An added image should be stale");
+        assertTrue(imageRemoved, "Removing the added image again should be up to date");
+        assertFalse(imageChanged, "A changed image should be stale");
+    }
+
+    /**
+     * Checks a unit like the plugin does, with the dependencies recorded by the last build.
+     */
+    private static boolean isUpToDate(BuildState buildState, String key, List<File> stateFiles) {
+        List<File> files = new ArrayList<>(stateFiles);
+        files.addAll(buildState.getDependencies(key));
+        return buildState.isUpToDate(key, BuildState.computeFingerprint(files));
+    }
+
+    /**
+     * Records a unit like the plugin does, with the sorted dependencies.
+     */
+    private static void update(BuildState buildState, String key, List<File> stateFiles, Collection<File> imageFiles) {
+        List<File> dependencies = new ArrayList<>(imageFiles);
+        Collections.sort(dependencies);
+        List<File> files = new ArrayList<>(stateFiles);
+        files.addAll(dependencies);
+        buildState.update(key, BuildState.computeFingerprint(files), dependencies);
+    }
+
+    private static File write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+}
@@ -0,0 +1,108 @@
+package org.primefaces.extensions.optimizerplugin.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Deflate test inflates the output of the exhaustive encoder and compares it to the input.
+ */
+class ExhaustiveDeflaterTest {
+
+    public static List<Path> provideFiles() throws IOException {
+        return Files.walk(Paths.get("target/test-classes/"))
+                    .filter(p -> p.toString().endsWith(".css"))
+                    .collect(Collectors.toList());
+    }
+
+    @ParameterizedTest
+    @MethodSource("provideFiles")
+    public void deflateFile(Path file) throws Exception {
+        byte[] data = Files.readAllBytes(file);
+
+        byte[] deflated = ExhaustiveDeflater.deflate(data, 15);
+
+        assertArrayEquals(data, inflate(deflated, data.length), "The inflated content should match");
+        assertTrue(deflated.length <= deflate(data) + 8, "The content should not compress worse than Deflater");
+    }
+
+    @Test
+    public void deflateAllFiles() throws Exception {
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        for (Path file : provideFiles()) {
+            all.write(Files.readAllBytes(file));
+        }
+
+        byte[] data = all.toByteArray();
+
+        byte[] deflated = ExhaustiveDeflater.deflate(data, 15);
+
+        assertArrayEquals(data, inflate(deflated, data.length), "The inflated content should match");
+        assertTrue(deflated.length < deflate(data), "The content should compress better than Deflater");
+    }
+
+    @Test
+    public void deflateSpecialData() throws Exception {
+        Random random = new Random(42);
+        byte[] noise = new byte[70000];
+        random.nextBytes(noise);
+        byte[] repeated = new byte[100000];
+        Arrays.fill(repeated, (byte) 'a');
+
+        for (byte[] data : Arrays.asList(new byte[0], new byte[] {1}, noise, repeated)) {
+            byte[] deflated = ExhaustiveDeflater.deflate(data, 5);
+
+            assertArrayEquals(data, inflate(deflated, data.length), "The inflated content should match");
+        }
+    }
+
+    private static byte[] inflate(byte[] deflated, int length) throws DataFormatException {
+        Inflater inflater = new Inflater(true);
+        // nowrap requires an extra dummy byte
+        inflater.setInput(Arrays.copyOf(deflated, deflated.length + 1));
+        byte[] result = new byte[length + 1];
+        int size = 0;
+        while (!inflater.finished() && size < result.length) {
+            int count = inflater.inflate(result, size, result.length - size);
+            if (count == 0 && inflater.needsInput()) {
+                break;
+            }
+
+            size += count;
+        }
+
+        assertTrue(inflater.finished(), "The stream should be complete");
+        inflater.end();
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] buffer = new byte[data.length + 1024];
+        int size = 0;
+        while (!deflater.finished()) {
+            size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+
+        deflater.end();
+        return size;
+    }
+}
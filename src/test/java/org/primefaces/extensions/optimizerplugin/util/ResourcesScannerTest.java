@@ -0,0 +1,138 @@
+package org.primefaces.extensions.optimizerplugin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.primefaces.extensions.optimizerplugin.ResourcesOptimizerMojo;
+
+/**
+ * Resources scanner test checks that the single walk of the input directory, sequential and parallel, finds the same
+ * files in the same order as one {@link DirectoryScanner} per include did.
+ */
+class ResourcesScannerTest {
+
+    private static final String[] DEFAULT_INCLUDES = {"**/*.css", "**/*.js"};
+
+    private static final String[] FILES = {"a.css", "a.js", "b/Z.css", "b/c/d.js", "b/c/e.css", "b/c/f.txt",
+                "b/node_modules/y.css", "node_modules/x.js", "node_modules/z/x.css", "lib/main.js", "lib/vendor.min.js",
+                "lib/sub/deep.CSS", "lib/sub/deep.js", "lib/node_modules/w.js", "empty/readme.txt"};
+
+    @Test
+    public void scanLikeDirectoryScanner(@TempDir Path dir) throws Exception {
+        // Arrange
+        createFiles(dir);
+        String[] includes = {"lib/**/*.js", "**/*.css", "**/*.js"};
+        String[] excludes = {"**/node_modules/**", "**/*.min.js"};
+        ResourcesScanner expected = scanWithDirectoryScanner(dir.toFile(), includes, excludes);
+
+        for (int threads : new int[] {1, 4}) {
+            try (WorkerPool pool = new WorkerPool(threads)) {
+                // Act
+                ResourcesScanner scanner = new ResourcesScanner(null, pool);
+                scanner.scan(dir.toFile(), includes, excludes);
+
+                // Assert
+                assertEquals(new ArrayList<>(expected.getCssFiles()), new ArrayList<>(scanner.getCssFiles()),
+                            "CSS files with " + threads + " threads");
+                assertEquals(new ArrayList<>(expected.getJsFiles()), new ArrayList<>(scanner.getJsFiles()),
+                            "JS files with " + threads + " threads");
+            }
+        }
+
+        assertFalse(expected.getJsFiles().contains(new File(dir.toFile(), "lib/node_modules/w.js")),
+                    "Files below node_modules should be excluded");
+    }
+
+    @Test
+    public void filterSubDirFilesLikeSubDirScan(@TempDir Path dir) throws Exception {
+        // Arrange
+        createFiles(dir);
+        String[] excludes = {"**/node_modules/**"};
+        Method filterSubDirFiles = ResourcesOptimizerMojo.class.getDeclaredMethod("filterSubDirFiles", Set.class,
+                    File.class, String.class);
+        filterSubDirFiles.setAccessible(true);
+        ResourcesOptimizerMojo mojo = new ResourcesOptimizerMojo();
+
+        File[] subDirs = dir.toFile().listFiles(File::isDirectory);
+        Arrays.sort(subDirs);
+
+        for (int threads : new int[] {1, 4}) {
+            try (WorkerPool pool = new WorkerPool(threads)) {
+                ResourcesScanner scanner = new ResourcesScanner(null, pool);
+                scanner.scan(dir.toFile(), DEFAULT_INCLUDES, excludes);
+
+                for (File subDir : subDirs) {
+                    // the files of a subfolder used to be selected by a scan of the subfolder
+                    ResourcesScanner subDirScanner = scanWithDirectoryScanner(subDir, DEFAULT_INCLUDES, new String[0]);
+                    List<File> expectedCssFiles = new ArrayList<>(subDirScanner.getCssFiles());
+                    expectedCssFiles.retainAll(scanner.getCssFiles());
+                    List<File> expectedJsFiles = new ArrayList<>(subDirScanner.getJsFiles());
+                    expectedJsFiles.retainAll(scanner.getJsFiles());
+
+                    // Act
+                    Set<?> cssFiles = (Set<?>) filterSubDirFiles.invoke(mojo, scanner.getCssFiles(), subDir,
+                                ResourcesScanner.CSS_FILE_EXTENSION);
+                    Set<?> jsFiles = (Set<?>) filterSubDirFiles.invoke(mojo, scanner.getJsFiles(), subDir,
+                                ResourcesScanner.JS_FILE_EXTENSION);
+
+                    // Assert
+                    assertEquals(expectedCssFiles, new ArrayList<>(cssFiles),
+                                "CSS files of " + subDir.getName() + " with " + threads + " threads");
+                    assertEquals(expectedJsFiles, new ArrayList<>(jsFiles),
+                                "JS files of " + subDir.getName() + " with " + threads + " threads");
+                }
+            }
+        }
+    }
+
+    private static void createFiles(Path dir) throws IOException {
+        for (String file : FILES) {
+            Path path = dir.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.write(path, new byte[0]);
+        }
+    }
+
+    /**
+     * Scans the way the scanner did before it walked the input directory only once.
+     */
+    private static ResourcesScanner scanWithDirectoryScanner(File inputDir, String[] includes, String[] excludes) {
+        ResourcesScanner result = new ResourcesScanner();
+        DirectoryScanner directoryScanner = new DirectoryScanner();
+        directoryScanner.setBasedir(inputDir);
+        directoryScanner.setExcludes(excludes);
+
+        for (String include : includes) {
+            directoryScanner.setIncludes(new String[] {include});
+            directoryScanner.scan();
+
+            String[] fileNames = directoryScanner.getIncludedFiles();
+            Arrays.sort(fileNames);
+            for (String fileName : fileNames) {
+                String extension = FileUtils.extension(fileName);
+                if (ResourcesScanner.CSS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
+                    result.getCssFiles().add(new File(inputDir, fileName));
+                }
+                else if (ResourcesScanner.JS_FILE_EXTENSION.equalsIgnoreCase(extension)) {
+                    result.getJsFiles().add(new File(inputDir, fileName));
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package org.primefaces.extensions.optimizerplugin.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Result cache test checks that entries are only hit for the same options and the same input.
+ */
+class ResultCacheTest {
+
+    @Test
+    public void hitSameOptionsAndContent(@TempDir Path dir) throws IOException {
+        // Arrange
+        ResultCache cache = new ResultCache(dir.resolve("cache").toFile());
+        byte[] optimized = "a{}".getBytes(StandardCharsets.UTF_8);
+        cache.put(cache.computeKey("yui:500", "a { }"), optimized);
+
+        // Act
+        byte[] cached = new ResultCache(dir.resolve("cache").toFile()).get(cache.computeKey("yui:500", "a { }"));
+
+        // Assert
+        assertArrayEquals(optimized, cached, "The same options and content should hit the entry");
+    }
+
+    @Test
+    public void missChangedOptionsOrContent(@TempDir Path dir) throws IOException {
+        // Arrange
+        ResultCache cache = new ResultCache(dir.toFile());
+        String key = cache.computeKey("yui:500", "a { }");
+        cache.put(key, "a{}".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        String optionsKey = cache.computeKey("yui:501", "a { }");
+        String contentKey = cache.computeKey("yui:500", "b { }");
+
+        // Assert
+        assertNotEquals(key, optionsKey, "Changed options should change the key");
+        assertNotEquals(key, contentKey, "Changed content should change the key");
+        assertNull(cache.get(optionsKey), "Changed options should miss");
+        assertNull(cache.get(contentKey), "Changed content should miss");
+    }
+
+    @Test
+    public void missChangedInputFile(@TempDir Path dir) throws IOException {
+        // Arrange
+        ResultCache cache = new ResultCache(dir.resolve("cache").toFile());
+        File first = write(dir.resolve("a.js"), "var a = 1;");
+        File second = write(dir.resolve("b.js"), "var b = 2;");
+        String key = cache.computeKey("closure", List.of(first, second));
+        cache.put(key, "var a=1,b=2;".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        String sameKey = cache.computeKey("closure", List.of(first, second));
+        String reorderedKey = cache.computeKey("closure", List.of(second, first));
+        write(dir.resolve("b.js"), "var b = 3;");
+        String changedKey = cache.computeKey("closure", List.of(first, second));
+
+        // Assert
+        assertEquals(key, sameKey, "Unchanged files should keep the key");
+        assertNotEquals(key, reorderedKey, "The order of the files should be part of the key");
+        assertNotEquals(key, changedKey, "A changed file should change the key");
+        assertNull(cache.get(changedKey), "A changed file should miss");
+    }
+
+    private static File write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+}
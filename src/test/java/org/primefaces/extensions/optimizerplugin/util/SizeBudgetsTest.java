@@ -0,0 +1,108 @@
+package org.primefaces.extensions.optimizerplugin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.primefaces.extensions.optimizerplugin.model.SizeBudget;
+
+/**
+ * Size budget test checks the limits and the growth against a written baseline.
+ */
+class SizeBudgetsTest {
+
+    @Test
+    public void exceedMaxSize(@TempDir Path dir) throws IOException {
+        // Arrange
+        File file = write(dir.resolve("bundle.js"), 1000);
+        SizeBudget budget = new SizeBudget();
+        budget.setMaxSize(999);
+        budget.setMaxGzipSize(1000);
+
+        SizeBudgets budgets = new SizeBudgets(dir.resolve("baseline.properties").toFile(), 9);
+        budgets.add("bundle.js", budget, List.of(file));
+
+        // Act
+        List<String> exceeded = budgets.check(new SystemStreamLog(), true);
+
+        // Assert
+        assertEquals(1, exceeded.size(), "Only the raw size should exceed the budget");
+        assertTrue(exceeded.get(0).contains("1000 bytes > 999 bytes"), exceeded.get(0));
+    }
+
+    @Test
+    public void exceedMaxGrowth(@TempDir Path dir) throws IOException {
+        // Arrange
+        File baseline = dir.resolve("baseline.properties").toFile();
+        File file = write(dir.resolve("bundle.js"), 1000);
+        SizeBudget budget = new SizeBudget();
+        budget.setMaxGrowth(20);
+
+        // the name needs escaping in the baseline
+        SizeBudgets first = new SizeBudgets(baseline, 9);
+        first.add("js/all bundle.js", budget, List.of(file));
+        assertTrue(first.check(new SystemStreamLog(), true).isEmpty(), "A budget without baseline can't grow");
+        first.saveBaseline();
+
+        // Act
+        write(dir.resolve("bundle.js"), 1200);
+        SizeBudgets within = new SizeBudgets(baseline, 9);
+        within.add("js/all bundle.js", budget, List.of(file));
+        List<String> withinExceeded = within.check(new SystemStreamLog(), true);
+
+        write(dir.resolve("bundle.js"), 1201);
+        SizeBudgets beyond = new SizeBudgets(baseline, 9);
+        beyond.add("js/all bundle.js", budget, List.of(file));
+        List<String> beyondExceeded = beyond.check(new SystemStreamLog(), true);
+
+        // Assert
+        assertTrue(withinExceeded.stream().noneMatch(message -> message.contains("exceeded: size grew")),
+                    "Growth of 20% should be allowed: " + withinExceeded);
+        assertTrue(beyondExceeded.stream().anyMatch(message -> message.contains("exceeded: size grew by 20.1%")),
+                    "Growth beyond 20% should exceed the budget: " + beyondExceeded);
+    }
+
+    @Test
+    public void keepUnmeasuredBaselineEntries(@TempDir Path dir) throws IOException {
+        // Arrange
+        File baseline = dir.resolve("baseline.properties").toFile();
+        Files.write(baseline.toPath(), List.of("other.js.size=42", "bundle.js.size=1"), StandardCharsets.ISO_8859_1);
+        File file = write(dir.resolve("bundle.js"), 1000);
+
+        SizeBudgets budgets = new SizeBudgets(baseline, 9);
+        budgets.add("bundle.js", new SizeBudget(), List.of(file));
+        budgets.check(new SystemStreamLog(), false);
+
+        // Act
+        budgets.saveBaseline();
+
+        // Assert
+        List<String> lines = Files.readAllLines(baseline.toPath(), StandardCharsets.ISO_8859_1);
+        assertTrue(lines.contains("other.js.size=42"), "Entries of other budgets should be kept: " + lines);
+        assertTrue(lines.contains("bundle.js.size=1000"), "Measured entries should be replaced: " + lines);
+    }
+
+    /**
+     * Writes random letters, so that the gzipped size grows with the size.
+     */
+    private static File write(Path path, int size) throws IOException {
+        StringBuilder sb = new StringBuilder(size);
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+
+        Files.write(path, sb.toString().getBytes(StandardCharsets.US_ASCII));
+        return path.toFile();
+    }
+}